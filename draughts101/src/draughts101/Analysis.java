@@ -0,0 +1,195 @@
+package draughts101;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Analysis
+ *
+ * Bulk analysis of games (PDN) or positions (FEN, 1 per line): the input is read one game at a time (Pdn), each position before a move (or the position of a FEN) is searched on a pool of workers.
+ * Results are written as they complete (not in input order); at most QUEUE positions per worker wait, so memory doesn't grow with the input.
+ * The workers share 1 transposition table (positions of the same game), 1 thread per search.
+ *
+ * draughts101.Analysis input [settings] [output] -> settings: level=5,time=ms,nodes=n,workers=cores,table=64 (MB),direct=false (table outside the heap),tablebase=true,cache=false
+ * -> per position (tab separated): game, ply, FEN, move played, best move, value, depth, nodes, ms (value forced: 1 legal move, not searched)
+ *
+ * @author van Foeken
+ */
+
+final class Analysis {
+    final private static int QUEUE = 4;//waiting positions per worker
+
+    private int level = 5;
+    private long time = Long.MAX_VALUE;
+    private long nodes = Long.MAX_VALUE;
+    private int workers = Runtime.getRuntime().availableProcessors();
+    private int table = 64;//MB
+    private boolean direct = false;
+    private boolean tablebase = true;
+    private boolean cache = false;//Cache: positions of earlier runs
+
+    final private AtomicLong positions = new AtomicLong();
+
+    private Analysis(String settings) {
+        for (String setting : settings.split(",")) {
+            String[] keyValue = setting.split("=");
+
+            if (keyValue.length != 2) {
+                continue;
+            }
+
+            switch (keyValue[0]) {
+                case "level":
+                    level = Math.max(1, Math.min(Search.MAX_LEVEL, Integer.parseInt(keyValue[1])));
+                    break;
+                case "time":
+                    time = Long.parseLong(keyValue[1]);
+                    break;
+                case "nodes":
+                    nodes = Long.parseLong(keyValue[1]);
+                    break;
+                case "workers":
+                    workers = Math.max(1, Integer.parseInt(keyValue[1]));
+                    break;
+                case "table":
+                    table = Integer.parseInt(keyValue[1]);
+                    break;
+                case "direct":
+                    direct = Boolean.parseBoolean(keyValue[1]);
+                    break;
+                case "tablebase":
+                    tablebase = Boolean.parseBoolean(keyValue[1]);
+                    break;
+                case "cache":
+                    cache = Boolean.parseBoolean(keyValue[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException(setting);
+            }
+        }
+    }
+
+    //best move and value of a position, line written at once
+    private void analyse(Search search, int game, int ply, String fen, String played, PrintWriter output) {
+        Position position = Pdn.getPosition(fen);
+        MoveGenerator moveGenerator = new MoveGenerator();
+        long[] moves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, position.color, position.pieces[position.color], position.pieces[1 - position.color], position.kings));
+
+        String best = "-";//game over
+        int[] value = {0, 0};//value, depth (1 legal move: not searched, value forced)
+        long[] searched = {0l, 0l};//nodes, ms
+
+        if (moves.length > 0) {
+            ArrayList<Long> bestMoves = MinMax.getBestMoves(search, position.color, position.pieces[position.color], position.pieces[1 - position.color], position.kings, moves, (depth, max, statistics, iterationMoves) -> {
+                value[0] = max;
+                value[1] = depth;
+                searched[0] = statistics.getNodes();
+                searched[1] = statistics.getTime();
+            });
+
+            best = MoveGenerator.toString(bestMoves.get(0));
+        }
+
+        synchronized (output) {
+            output.println(game + "\t" + ply + "\t" + fen + "\t" + played + "\t" + best + "\t" + (moves.length == 1 ? "forced" : value[0]) + "\t" + value[1] + "\t" + searched[0] + "\t" + searched[1]);
+            output.flush();
+        }
+
+        positions.incrementAndGet();
+    }
+
+    //games of the input, positions submitted in order, waiting while the queue is full
+    private int analyse(BufferedReader reader, PrintWriter output) throws IOException, InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Semaphore queue = new Semaphore(workers * QUEUE);
+        TranspositionTable table = TranspositionTable.getTable(this.table, direct);
+        MoveGenerator moveGenerator = new MoveGenerator();
+
+        Pdn pdn = new Pdn(reader);
+        int games = 0;
+
+        try {
+            for (Pdn.Record record = pdn.next(); record != null; record = pdn.next()) {
+                int game = ++games;
+                Position position;
+
+                try {
+                    position = Pdn.getPosition(record.getFen());
+                } catch (IllegalArgumentException ex) {
+                    System.err.println("game " + game + ": " + ex.getMessage());
+
+                    continue;
+                }
+
+                for (int ply = 0; ply < Math.max(1, record.moves.size()); ply++) {
+                    String played = ply < record.moves.size() ? record.moves.get(ply) : "-";
+                    long move = ply < record.moves.size() ? Pdn.getMove(moveGenerator, position, played) : Pdn.NONE;
+
+                    if (move == Pdn.NONE && ply < record.moves.size()) {
+                        System.err.println("game " + game + ", ply " + (ply + 1) + ": " + played);
+
+                        break;//illegal: rest of the game ignored
+                    }
+
+                    int number = ply + 1;
+                    String fen = Pdn.getFen(position);
+                    Search search = new Search(table, cache ? Search.getCache() : null, tablebase ? Search.TABLEBASE : null, null);
+
+                    search.level = level;
+                    search.time = time;
+                    search.nodes = nodes;
+
+                    queue.acquire();
+
+                    pool.execute(() -> {
+                        try {
+                            analyse(search, game, number, fen, played, output);
+                        } finally {
+                            queue.release();
+                        }
+                    });
+
+                    if (move != Pdn.NONE) {
+                        position.make(move);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+
+        return games;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length == 0) {
+            System.out.println("draughts101.Analysis input [level=5,time=ms,nodes=n,workers=n,table=64,direct=false,tablebase=true,cache=false] [output]");
+
+            return;
+        }
+
+        Analysis analysis = new Analysis(args.length > 1 ? args[1] : "");
+        long start = System.currentTimeMillis();
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(args[0])); PrintWriter output = new PrintWriter(new BufferedWriter(args.length > 2 ? new FileWriter(args[2]) : new OutputStreamWriter(System.out)))) {
+            int games = analysis.analyse(reader, output);
+            long time = System.currentTimeMillis() - start;
+
+            System.err.println(games + " games, " + analysis.positions.get() + " positions, " + time + " ms, " + analysis.positions.get() * 1000l / Math.max(1l, time) + " positions/s");
+        }
+    }
+
+}
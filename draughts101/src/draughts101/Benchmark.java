@@ -0,0 +1,172 @@
+package draughts101;
+
+import static draughts101.Board.WHITE;
+import static draughts101.Game.WB;
+import static draughts101.MoveGenerator.getBitboard;
+import static draughts101.MoveGenerator.getKings;
+import com.sun.management.ThreadMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Benchmark
+ * 
+ * Throughput (ops/s) and allocation (B/op) of the hot paths over fixed positions:
+ * king steps, MoveGenerator (all moves, captures only), Game.setMoves, Evaluation (make, leaf value, unmake) and MinMax.getAIMove level 1-5 (empty table, 1 thread).
+ * 
+ * draughts101.Benchmark [filter] [iterations] [ms per iteration] -> filter: part of the name, e.g. getAIMove
+ * 
+ * @author van Foeken
+ */
+
+final class Benchmark {
+    //name, board (Game), color
+    final private static String[][] POSITIONS = {
+        {"opening", "bbbbbbbbbbbbbbbbbbbb__________wwwwwwwwwwwwwwwwwwww", "w"},
+        {"middlegame", "bb_bbbb_b_bb_bbbbb__b_bbbw_____www_www_w__wwww_ww_", "b"},
+        {"kings", "____B______W____________W_______Bww____w____w_____", "w"},
+        {"captures", "b__Wbw__b________bbw_______ww__w___ww_ww__w__wwww_", "w"}
+    };
+    
+    final private static ThreadMXBean THREAD = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+    
+    private static long blackhole;
+    
+    //warmup and measurement: iterations of time ms, operation in batches (setup before each batch, not measured)
+    private static void run(String name, int iterations, long time, int batch, Runnable setup, LongSupplier operation) {
+        double[] throughput = new double[iterations];
+        long operations = 0l;
+        long bytes = 0l;
+        
+        for (int i = -iterations; i < iterations; i++) {
+            long operationsIteration = 0l;
+            long nanos = 0l;
+            
+            while (nanos < time * 1000000l) {
+                if (setup != null) {
+                    setup.run();
+                }
+                
+                long allocated = THREAD.getThreadAllocatedBytes(Thread.currentThread().getId());
+                long start = System.nanoTime();
+                
+                for (int j = 0; j < batch; j++) {
+                    blackhole ^= operation.getAsLong();
+                }
+                
+                nanos += System.nanoTime() - start;
+                
+                if (i >= 0) {
+                    bytes += THREAD.getThreadAllocatedBytes(Thread.currentThread().getId()) - allocated;
+                }
+                
+                operationsIteration += batch;
+            }
+            
+            if (i >= 0) {
+                throughput[i] = operationsIteration * 1e9 / nanos;
+                operations += operationsIteration;
+            }
+        }
+        
+        double mean = 0.0;
+        double error = 0.0;
+        
+        for (double value : throughput) {
+            mean += value / iterations;
+        }
+        
+        for (double value : throughput) {
+            error += (value - mean) * (value - mean) / Math.max(1, iterations - 1);
+        }
+        
+        System.out.printf("%-32s %16.1f \u00b1 %12.1f ops/s %12.1f B/op%n", name, mean, Math.sqrt(error), (double) bytes / operations);
+    }
+    
+    public static void main(String[] args) {
+        String filter = args.length > 0 ? args[0] : "";
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        long time = args.length > 2 ? Long.parseLong(args[2]) : 1000l;
+        
+        MoveGenerator moveGenerator = new MoveGenerator();
+
+        System.out.printf("%-32s %16s   %12s %18s%n", "Benchmark", "Score", "Error", "Allocation");
+        
+        for (String[] position : POSITIONS) {
+            char[] board = position[1].toCharArray();
+            int color = WB.indexOf(position[2]);
+            
+            long isColor = getBitboard(board, color);
+            long opponent = getBitboard(board, 1 - color);
+            long kings = getKings(board);
+            
+            if (("kingSteps." + position[0]).contains(filter)) {
+                run("kingSteps." + position[0], iterations, time, 1024, null, () -> {
+                    long steps = 0l;
+                    
+                    for (int index = 0; index < board.length; index++) {
+                        for (MoveGenerator.Direction direction : MoveGenerator.DIRECTIONS) {
+                            if (direction.canStep(index)) {
+                                steps ^= direction.getKingSteps(index, isColor ^ opponent);
+                            }
+                        }
+                    }
+                    
+                    return steps;
+                });
+            }
+            
+            if (("generate." + position[0]).contains(filter)) {
+                run("generate." + position[0], iterations, time, 1024, null, () -> moveGenerator.generate(0, color, isColor, opponent, kings));
+            }
+            
+            if (("generateCaptures." + position[0]).contains(filter)) {
+                run("generateCaptures." + position[0], iterations, time, 1024, null, () -> moveGenerator.generateCaptures(0, color, isColor, opponent, kings));
+            }
+            
+            if (("Game.setMoves." + position[0]).contains(filter)) {
+                Game game = new Game(WHITE, board.clone());
+                
+                run("Game.setMoves." + position[0], iterations, time, 64, null, () -> {
+                    game.setMoves(color);
+                    
+                    return 1l;
+                });
+            }
+            
+            long[] moves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, color, isColor, opponent, kings));
+            
+            if (("evaluate." + position[0]).contains(filter)) {
+                Position evaluated = new Position(color, isColor, opponent, kings);
+                int[] move = {0};
+                
+                //make, evaluate and unmake the moves in turn
+                run("evaluate." + position[0], iterations, time, 1024, null, () -> {
+                    evaluated.make(moves[move[0]++ % moves.length]);
+                    
+                    long value = Evaluation.DEFAULT.getValue(evaluated, 1 - color);
+                    
+                    evaluated.unmake();
+                    
+                    return value;
+                });
+            }
+            
+            for (int level = 1; level <= 5; level++) {
+                Search search = new Search(Search.TABLE, null, Search.TABLEBASE, Search.BOOK);//no Cache: same work every run
+                
+                search.level = level;
+                
+                if (("getAIMove." + level + "." + position[0]).contains(filter)) {
+                    run("getAIMove." + level + "." + position[0], iterations, time, 1, () -> Search.TABLE.clear(), () -> MinMax.getBestMoves(search, color, isColor, opponent, kings, moves, null).size());
+                }
+            }
+        }
+        
+        if (blackhole == 42l) {
+            System.out.println();
+        }
+    }
+    
+}
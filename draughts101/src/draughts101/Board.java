@@ -47,6 +47,9 @@ public class Board extends JPanel implements ActionListener {
     final static Board BOARD = new Board(40);
     
     final static JSlider LEVEL = new JSlider(1, 5);//1 level = 2 moves
+    final static JSlider THREADS = new JSlider(1, Runtime.getRuntime().availableProcessors(), 1);
+    final static JCheckBox SMP = new JCheckBox("Lazy SMP");//threads search the whole tree, sharing the transposition table
+    final static JCheckBox PONDER = new JCheckBox("Ponder");//AI searches its replies on the player's time
     final static JButton ARROW = new JButton(new ImageIcon("arrow.png"));
     final static JLabel WINNER = new JLabel();
     final static JCheckBox MOVEABLE = new JCheckBox();
@@ -100,12 +103,15 @@ public class Board extends JPanel implements ActionListener {
     }
     
     public static void main(String[] args) {
+        Statistics.register();
+        
         JFrame frame = new JFrame("Draughts101");
         
         JMenuBar menuBar = new JMenuBar();
 
         JMenu gameMenu = menuBar.add(new JMenu("Game"));
         JMenu aiMenu = menuBar.add(new JMenu("AI"));
+        JMenu threadsMenu = menuBar.add(new JMenu("Threads"));
         
         JButton rotation = new JButton("\u21ba");
         
@@ -127,9 +133,16 @@ public class Board extends JPanel implements ActionListener {
         }
         
         aiMenu.add(LEVEL);
+        aiMenu.add(PONDER);
 
         LEVEL.setMajorTickSpacing(1);
         LEVEL.setPaintLabels(true);
+        
+        threadsMenu.add(THREADS);
+        threadsMenu.add(SMP);
+        
+        THREADS.setLabelTable(THREADS.createStandardLabels(Math.max(1, THREADS.getMaximum() - 1)));
+        THREADS.setPaintLabels(true);
          
         BOARD.addContainerListener(new ContainerAdapter() {
             @Override
@@ -139,6 +152,7 @@ public class Board extends JPanel implements ActionListener {
             @Override
             public void componentRemoved(ContainerEvent e) {
                 ARROW.removeActionListener((Game) e.getChild());
+                ((Game) e.getChild()).stop();
 
                 WINNER.setText("");
             }
@@ -0,0 +1,235 @@
+package draughts101;
+
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.getBitboard;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+import static draughts101.TranspositionTable.getHash;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Book
+ *
+ * Opening book: position (Zobrist hash) -> weighted moves, sorted by hash in a memory-mapped file, found by binary search.
+ *
+ * Entry (16 bytes): hash, move (from << 6 | to), weight.
+ *
+ * draughts101.Book search [plies] [level] [file] -> best moves (MinMax) of all positions up to plies from the start
+ * draughts101.Book games games [plies] [file] -> moves played in games (PDN: 1. 32-28 19-23 2. 28x19 ... 1-1, a game ends with a result or the tags of the next)
+ *
+ * @author van Foeken
+ */
+
+final class Book {
+    final static long NONE = -1l;//no book move
+
+    final static File FILE = new File("book.bin");
+
+    final private static int MAGIC = 0x42313031;//B101
+    final private static int HEADER = 8;//magic, entries
+    final private static int ENTRY = 16;
+
+    final private ByteBuffer book;//null: no book
+    final private int size;
+
+    //book in file, empty if there isn't one
+    Book(File file) {
+        ByteBuffer book = null;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            book = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0l, randomAccessFile.length());
+
+            if (book.capacity() < HEADER || book.getInt(0) != MAGIC || book.capacity() != HEADER + book.getInt(4) * ENTRY) {
+                book = null;
+            }
+        } catch (IOException ex) {}
+
+        this.book = book;
+        size = book == null ? 0 : book.getInt(4);
+    }
+
+    int size() {
+        return size;
+    }
+
+    //first entry of hash (or the entry after)
+    private int getEntry(long hash) {
+        int low = 0;
+        int high = size;
+
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+
+            if (book.getLong(HEADER + middle * ENTRY) < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+
+    //weighted random book move of color (one of moves) or NONE
+    long getMove(int color, long isColor, long opponent, long kings, long[] moves) {
+        if (size == 0) {
+            return NONE;
+        }
+
+        long hash = getHash(color, isColor, opponent, kings);
+        long[] bookMoves = new long[moves.length];
+        int[] weights = new int[moves.length];
+        int total = 0;
+
+        for (int entry = getEntry(hash); entry < size && book.getLong(HEADER + entry * ENTRY) == hash; entry++) {
+            int bookMove = book.getInt(HEADER + entry * ENTRY + 8);
+
+            for (int i = 0; i < moves.length; i++) {
+                if ((getFrom(moves[i]) << 6 | getTo(moves[i])) == bookMove) {
+                    bookMoves[i] = moves[i];
+                    weights[i] = book.getInt(HEADER + entry * ENTRY + 12);
+                    total += weights[i];
+
+                    break;
+                }
+            }
+        }
+
+        for (int i = 0, random = (int) (Math.random() * total); i < moves.length && total > 0; random -= weights[i++]) {
+            if (random < weights[i]) {
+                return bookMoves[i];
+            }
+        }
+
+        return NONE;
+    }
+
+    //hash -> move -> weight
+    private static void add(TreeMap<Long, TreeMap<Integer, Integer>> entries, long hash, long move, int weight) {
+        entries.computeIfAbsent(hash, key -> new TreeMap<>()).merge(getFrom(move) << 6 | getTo(move), weight, Integer::sum);
+    }
+
+    private static void write(TreeMap<Long, TreeMap<Integer, Integer>> entries, File file) throws IOException {
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+            output.writeInt(MAGIC);
+            output.writeInt(entries.values().stream().mapToInt(Map::size).sum());
+
+            for (Map.Entry<Long, TreeMap<Integer, Integer>> entry : entries.entrySet()) {
+                for (Map.Entry<Integer, Integer> move : entry.getValue().entrySet()) {
+                    output.writeLong(entry.getKey());
+                    output.writeInt(move.getKey());
+                    output.writeInt(move.getValue());
+                }
+            }
+        }
+    }
+
+    //best moves of all positions up to plies from the start
+    private static void search(TreeMap<Long, TreeMap<Integer, Integer>> entries, int plies, int level) {
+        MoveGenerator moveGenerator = new MoveGenerator();
+        HashSet<Long> positions = new HashSet();
+
+        Search search = new Search(Search.TABLE, null, Search.TABLEBASE, null);
+
+        search.level = level;
+        search.threads = Runtime.getRuntime().availableProcessors();
+
+        //color, isColor, opponent, kings
+        ArrayList<long[]> ply = new ArrayList(Arrays.asList(new long[][] {{WHITE, getBitboard(Position.START.toCharArray(), WHITE), getBitboard(Position.START.toCharArray(), 1 - WHITE), 0l}}));
+
+        for (int i = 0; i < plies; i++) {
+            ArrayList<long[]> next = new ArrayList();
+
+            for (long[] position : ply) {
+                int color = (int) position[0];
+                long hash = getHash(color, position[1], position[2], position[3]);
+
+                if (positions.add(hash)) {
+                    long[] moves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, color, position[1], position[2], position[3]));
+
+                    if (moves.length > 0) {
+                        for (long move : MinMax.getBestMoves(search, color, position[1], position[2], position[3], moves, null)) {
+                            add(entries, hash, move, 1);
+                        }
+
+                        for (long move : moves) {
+                            next.add(new long[] {1 - color, position[2] ^ getCaptures(move), position[1] ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, position[3], move)});
+                        }
+                    }
+                }
+            }
+
+            System.out.println("ply " + (i + 1) + ": " + positions.size() + " positions");
+
+            ply = next;
+        }
+    }
+
+    //moves of games (PDN, weight: times played) up to plies
+    private static void games(TreeMap<Long, TreeMap<Integer, Integer>> entries, File games, int plies) throws IOException {
+        MoveGenerator moveGenerator = new MoveGenerator();
+        int records = 0;
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(games))) {
+            Pdn pdn = new Pdn(reader);
+
+            for (Pdn.Record record = pdn.next(); record != null; record = pdn.next()) {
+                Position position = Pdn.getPosition(record.getFen());
+
+                for (int i = 0; i < Math.min(plies, record.moves.size()); i++) {
+                    long move = Pdn.getMove(moveGenerator, position, record.moves.get(i));
+
+                    if (move == Pdn.NONE) {
+                        break;//illegal: rest of the game ignored
+                    }
+
+                    add(entries, position.hash, move, 1);
+
+                    position.make(move);
+                }
+
+                records++;
+            }
+        }
+
+        System.out.println(records + " games");
+    }
+
+    public static void main(String[] args) throws IOException {
+        TreeMap<Long, TreeMap<Integer, Integer>> entries = new TreeMap();
+        File file;
+
+        if (args.length > 0 && args[0].equals("search")) {
+            search(entries, args.length > 1 ? Integer.parseInt(args[1]) : 2, args.length > 2 ? Integer.parseInt(args[2]) : 5);
+            file = args.length > 3 ? new File(args[3]) : FILE;
+        } else if (args.length > 1 && args[0].equals("games")) {
+            games(entries, new File(args[1]), args.length > 2 ? Integer.parseInt(args[2]) : 20);
+            file = args.length > 3 ? new File(args[3]) : FILE;
+        } else {
+            System.out.println("draughts101.Book search [plies] [level] [file] | games games [plies] [file]");
+
+            return;
+        }
+
+        write(entries, file);
+
+        System.out.println(file + ": " + entries.size() + " positions");
+    }
+
+}
@@ -0,0 +1,176 @@
+package draughts101;
+
+import static draughts101.TranspositionTable.EMPTY;
+import static draughts101.TranspositionTable.NONE;
+import static draughts101.TranspositionTable.getDepth;
+import static draughts101.TranspositionTable.getMove;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.Arrays;
+
+/**
+ * Cache
+ *
+ * Persistent analysis: hash -> plies, value, bound, best move (same entry as TranspositionTable) in a memory-mapped file, kept after the program ends.
+ * Only searched positions of plies >= DEPTH are probed and stored, the TranspositionTable does the rest.
+ * The header holds the default evaluation weights (hash) and the entry version, also in the file name (cache-<evaluation>.bin): a file of other weights or entries is not used (never emptied, other processes may use it).
+ *
+ * Buckets of 4 entries (64 bytes, hash ^ data, data): a new position replaces an empty entry or one of an older run (generation) first, else the lowest depth.
+ * Processes share the file like threads share the TranspositionTable (no locks, torn entries fail the hash ^ data check), a read-only file is only read.
+ *
+ * @author van Foeken
+ */
+
+final class Cache {
+    final static int DEPTH = 5;//min plies probed and stored
+
+    final static int SIZE = 1 << 20;//entries of a new file (16 MB)
+
+    final private static int MAGIC = 0x43313031;//C101
+    final private static int HEADER = 16;//magic, entries, generation, evaluation
+    final private static int VERSION = 2;//entries: 2 plies
+    final private static int EVALUATION = 31 * Arrays.hashCode(Evaluation.getWeights()) + VERSION;
+
+    final static File FILE = new File("cache-" + Integer.toHexString(EVALUATION) + ".bin");//1 file per evaluation
+    final private static int ENTRY = 16;
+    final private static int BUCKET = 4;//entries
+
+    final private static int GENERATION = 56;//data: generation << 56
+    final private static long DATA = (1l << GENERATION) - 1l;
+
+    final private ByteBuffer cache;//null: no cache
+    final private int mask;//buckets - 1
+    final private long generation;
+    final private boolean isWritable;
+
+    //cache in file, new file of size entries if there isn't one, read only if it can't be written
+    Cache(File file, int size) {
+        ByteBuffer cache = null;
+        int generation = 0;
+        boolean isWritable = true;
+
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            FileLock lock = channel.lock();//1 process creates the file or starts a run
+
+            try {
+                if (randomAccessFile.length() == 0l) {
+                    size = Integer.highestOneBit(Math.max(BUCKET, size));
+
+                    randomAccessFile.setLength(HEADER + (long) size * ENTRY);
+                    randomAccessFile.writeInt(MAGIC);
+                    randomAccessFile.writeInt(size);
+                    randomAccessFile.writeInt(0);
+                    randomAccessFile.writeInt(EVALUATION);
+                }
+
+                cache = channel.map(FileChannel.MapMode.READ_WRITE, 0l, randomAccessFile.length());
+
+                if (isValid(cache)) {
+                    generation = (cache.getInt(8) + 1) & 0xFF;
+                    cache.putInt(8, generation);
+                }
+            } finally {
+                lock.release();
+            }
+        } catch (IOException ex) {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+                cache = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_ONLY, 0l, randomAccessFile.length());
+                isWritable = false;
+            } catch (IOException readException) {}
+        }
+
+        this.cache = isValid(cache) ? cache : null;
+        this.mask = this.cache == null ? 0 : this.cache.getInt(4) / BUCKET - 1;
+        this.generation = (long) generation << GENERATION;
+        this.isWritable = isWritable && this.cache != null;
+    }
+
+    private static boolean isValid(ByteBuffer cache) {
+        if (cache == null || cache.capacity() < HEADER || cache.getInt(0) != MAGIC) {
+            return false;
+        }
+
+        int size = cache.getInt(4);
+
+        return size >= BUCKET && Integer.bitCount(size) == 1 && cache.capacity() == HEADER + (long) size * ENTRY && cache.getInt(12) == EVALUATION;
+    }
+
+    int size() {
+        return cache == null ? 0 : (mask + 1) * BUCKET;
+    }
+
+    private int getBucket(long hash) {
+        return HEADER + (int) (hash >>> 32 & mask) * BUCKET * ENTRY;//high bits: the TranspositionTable uses the low bits
+    }
+
+    //entry (TranspositionTable) of hash or EMPTY
+    long get(long hash) {
+        if (cache == null) {
+            return EMPTY;
+        }
+
+        int bucket = getBucket(hash);
+
+        for (int i = 0; i < BUCKET; i++) {
+            long data = cache.getLong(bucket + i * ENTRY + 8);
+
+            if ((cache.getLong(bucket + i * ENTRY) ^ data) == hash) {
+                return data & DATA;
+            }
+        }
+
+        return EMPTY;
+    }
+
+    void put(long hash, int plies, int value, int bound, int move) {
+        if (!isWritable || plies < DEPTH) {
+            return;
+        }
+
+        int bucket = getBucket(hash);
+        int replace = -1;
+        long replaced = 0l;
+
+        for (int i = 0; i < BUCKET; i++) {
+            long data = cache.getLong(bucket + i * ENTRY + 8);
+
+            if ((cache.getLong(bucket + i * ENTRY) ^ data) == hash) {//same position: deeper stays
+                if (getDepth(data) > plies && (data & ~DATA) == generation) {
+                    return;
+                } else if (move == NONE) {
+                    move = getMove(data);
+                }
+
+                replace = i;
+
+                break;
+            } else if (replace == -1 || isReplaced(data, replaced)) {
+                replace = i;
+                replaced = data;
+            }
+        }
+
+        long data = generation | TranspositionTable.getData(plies, value, bound, move);
+
+        cache.putLong(bucket + replace * ENTRY, hash ^ data);
+        cache.putLong(bucket + replace * ENTRY + 8, data);
+    }
+
+    //data replaced before other: empty, older run, fewer plies
+    private boolean isReplaced(long data, long other) {
+        if (other == EMPTY || data == EMPTY) {
+            return data == EMPTY && other != EMPTY;
+        } else if (((data ^ other) & ~DATA) != 0l) {
+            return (other & ~DATA) == generation;
+        }
+
+        return getDepth(data) < getDepth(other);
+    }
+
+}
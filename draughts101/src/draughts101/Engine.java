@@ -0,0 +1,305 @@
+package draughts101;
+
+import static draughts101.Board.GRID;
+import static draughts101.MoveGenerator.getCaptures;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Engine
+ *
+ * Headless engine (no Swing, no AWT): Hub protocol over stdin/stdout, one line per command.
+ *
+ * hub -> id, param, wait
+ * init -> ready
+ * ping -> pong
+ * new-game -> empty transposition table
+ * pos [pos=W + 50 x w, b, W, B or e | fen="W:W31-50:B1-20" (Pdn)] [moves="32-28 19-23"]
+ * level [depth=n] [nodes=n] [move-time=s] [time=s inc=s] [infinite]
+ * set-param name=threads value=n, name=smp value=true, name=pvs value=true, name=aspiration value=25, name=man value=100 (evaluation weights: man, king, advance, center, back_rank, tempo, outpost, runaway)
+ * go think -> info depth score nodes time nps pv ..., done move
+ * stop -> done (best move so far)
+ * quit
+ *
+ * Moves: 32-28, 28x19x23 (from x to x captured).
+ *
+ * @author van Foeken
+ */
+
+final class Engine {
+    final private static String NAME = "Draughts101";
+    final private static String AUTHOR = "van Foeken";
+
+    final private static String START = "Wbbbbbbbbbbbbbbbbbbbbeeeeeeeeeewwwwwwwwwwwwwwwwwwww";
+    final private static String PIECES = "wbWB";//Hub, empty: e
+
+    final private static int LEVEL = 5;
+
+    final private static Pattern ARGUMENT = Pattern.compile("([\\w-]+)(?:=(\"[^\"]*\"|\\S+))?");
+
+    final private MoveGenerator moveGenerator = new MoveGenerator();
+
+    final private Position position = new Position();
+    final private Search search = new Search();//settings set per go, its pool kept for the next search
+
+    private int level = LEVEL;
+    private long time = Long.MAX_VALUE;
+    private long nodes = Long.MAX_VALUE;
+
+    private int threads = 1;
+    private boolean smp = false;
+    private boolean pvs = true;
+    private int aspiration = 25;
+    private Evaluation evaluation = Evaluation.DEFAULT;
+    final private int[] weights = Evaluation.getWeights();
+
+    private Thread thread;//search
+
+    private static synchronized void send(String line) {
+        System.out.println(line);
+        System.out.flush();
+    }
+
+    //from x to x captured
+    static String getNotation(long move) {
+        String notation = MoveGenerator.toString(move);
+
+        for (long captures = getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            notation += "x" + (Long.numberOfTrailingZeros(captures) + 1);
+        }
+
+        return notation;
+    }
+
+    //name -> value (without quotes), name only -> ""
+    private static HashMap<String, String> getArguments(String line) {
+        HashMap<String, String> arguments = new HashMap();
+        Matcher matcher = ARGUMENT.matcher(line);
+
+        while (matcher.find()) {
+            String value = matcher.group(2) == null ? "" : matcher.group(2);
+
+            arguments.put(matcher.group(1), value.startsWith("\"") ? value.substring(1, value.length() - 1) : value);
+        }
+
+        return arguments;
+    }
+
+    private void setPosition(String position) {
+        if (position.length() != 1 + GRID * GRID / 2 || "WB".indexOf(position.charAt(0)) == -1) {
+            throw new IllegalArgumentException("pos: " + position);
+        }
+
+        long[] pieces = new long[2];
+        long kings = 0l;
+
+        for (int i = 0; i < position.length() - 1; i++) {
+            int piece = PIECES.indexOf(position.charAt(i + 1));
+
+            if (piece != -1) {
+                pieces[piece % 2] ^= 1l << i;
+                kings ^= piece >= 2 ? 1l << i : 0l;
+            } else if (position.charAt(i + 1) != 'e') {
+                throw new IllegalArgumentException("pos: " + position);
+            }
+        }
+
+        int color = "WB".indexOf(position.charAt(0));
+
+        this.position.set(color, pieces[color], pieces[1 - color], kings);
+    }
+
+    private long[] getMoves() {
+        return Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, position.color, position.pieces[position.color], position.pieces[1 - position.color], position.kings));
+    }
+
+    private void move(String notation) {
+        for (long move : getMoves()) {
+            if (getNotation(move).equals(notation) || MoveGenerator.toString(move).equals(notation)) {
+                position.make(move);
+
+                return;
+            }
+        }
+
+        throw new IllegalArgumentException("move: " + notation);
+    }
+
+    private void setLevel(HashMap<String, String> arguments) {
+        boolean isLimited = arguments.containsKey("nodes") || arguments.containsKey("move-time") || arguments.containsKey("time") || arguments.containsKey("infinite");
+
+        level = arguments.containsKey("depth") ? Math.max(1, Math.min(Search.MAX_LEVEL, Integer.parseInt(arguments.get("depth")))) : isLimited ? Search.MAX_LEVEL : LEVEL;
+        nodes = arguments.containsKey("nodes") ? Long.parseLong(arguments.get("nodes")) : Long.MAX_VALUE;
+        time = Long.MAX_VALUE;
+
+        if (arguments.containsKey("move-time")) {
+            time = (long) (Double.parseDouble(arguments.get("move-time")) * 1000.0);
+        } else if (arguments.containsKey("time")) {//game time: 1/20 + increment
+            time = (long) ((Double.parseDouble(arguments.get("time")) / 20.0 + Double.parseDouble(arguments.getOrDefault("inc", "0"))) * 1000.0);
+        }
+    }
+
+    private void setParameter(String name, String value) {
+        if (name == null || value == null) {
+            throw new IllegalArgumentException("set-param: name and value");
+        } else if (name.equals("threads")) {
+            threads = Math.max(1, Integer.parseInt(value));
+        } else if (name.equals("smp")) {
+            smp = Boolean.parseBoolean(value);
+        } else if (name.equals("pvs")) {
+            pvs = Boolean.parseBoolean(value);
+        } else if (name.equals("aspiration")) {
+            aspiration = Math.max(0, Integer.parseInt(value));
+        } else {
+            try {
+                weights[Evaluation.Weight.valueOf(name.toUpperCase()).ordinal()] = Integer.parseInt(value);
+            } catch (IllegalArgumentException ex) {
+                throw new IllegalArgumentException("set-param: " + name);
+            }
+
+            evaluation = new Evaluation(weights);
+        }
+    }
+
+    private void go() {
+        int color = position.color;
+        long isColor = position.pieces[color];
+        long opponent = position.pieces[1 - color];
+        long kings = position.kings;
+        long[] moves = getMoves();
+
+        search.level = level;
+        search.time = time;
+        search.nodes = nodes;
+        search.threads = threads;
+        search.smp = smp;
+        search.pvs = pvs;
+        search.aspiration = aspiration;
+        search.evaluation = evaluation;
+
+        thread = new Thread() {
+            @Override
+            public void run() {
+                if (moves.length == 0) {
+                    send("done");
+                } else {
+                    long move = search.book == null ? Book.NONE : search.book.getMove(color, isColor, opponent, kings, moves);
+
+                    if (move == Book.NONE) {//first best move (not a random one of getAIMove): done plays the pv
+                        move = MinMax.getBestMoves(search, color, isColor, opponent, kings, moves, (depth, value, statistics, bestMoves) -> {
+                            send("info depth=" + depth + " score=" + value + " nodes=" + statistics.getNodes() + " time=" + String.format("%.3f", statistics.getTime() / 1000.0) + " nps=" + statistics.getNodesPerSecond() + " pv=\"" + getNotation(bestMoves.get(0)) + "\"");
+                        }).get(0);
+                    }
+
+                    send("done move=" + getNotation(move));
+                }
+            }
+        };
+
+        thread.start();
+    }
+
+    private void stop() throws InterruptedException {
+        if (thread != null) {
+            thread.interrupt();
+            thread.join();
+
+            thread = null;
+        }
+    }
+
+    private boolean command(String line) throws InterruptedException {
+        String[] words = line.trim().split("\\s+", 2);
+        String command = words[0];
+        HashMap<String, String> arguments = getArguments(words.length > 1 ? words[1] : "");
+
+        switch (command) {
+            case "hub":
+                send("id name=" + NAME + " author=\"" + AUTHOR + "\"");
+                send("param name=threads value=" + threads + " type=int min=1 max=" + Runtime.getRuntime().availableProcessors());
+                send("param name=smp value=" + smp + " type=bool");
+                send("param name=pvs value=" + pvs + " type=bool");
+                send("param name=aspiration value=" + aspiration + " type=int min=0 max=1000");
+
+                for (Evaluation.Weight weight : Evaluation.Weight.values()) {
+                    send("param name=" + weight.name().toLowerCase() + " value=" + weights[weight.ordinal()] + " type=int");
+                }
+
+                send("wait");
+                break;
+            case "init":
+                send("ready");
+                break;
+            case "ping":
+                send("pong");
+                break;
+            case "new-game":
+                stop();
+                Search.TABLE.clear();
+                break;
+            case "pos":
+                stop();
+                if (arguments.containsKey("fen")) {
+                    Position position = Pdn.getPosition(arguments.get("fen"));
+
+                    this.position.set(position.color, position.pieces[position.color], position.pieces[1 - position.color], position.kings);
+                } else {
+                    setPosition(arguments.getOrDefault("pos", START));
+                }
+
+                for (String notation : arguments.getOrDefault("moves", "").split("\\s+")) {
+                    if (!notation.isEmpty()) {
+                        move(notation);
+                    }
+                }
+                break;
+            case "level":
+                setLevel(arguments);
+                break;
+            case "set-param":
+                setParameter(arguments.get("name"), arguments.get("value"));
+                break;
+            case "go":
+                stop();
+                go();
+                break;
+            case "stop":
+                stop();
+                break;
+            case "quit":
+                stop();
+                return false;
+            case "":
+                break;
+            default:
+                send("error unknown command: " + command);
+        }
+
+        return true;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Statistics.register();
+
+        Engine engine = new Engine();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            try {
+                if (!engine.command(line)) {
+                    break;
+                }
+            } catch (IllegalArgumentException ex) {
+                send("error " + ex.getMessage());
+            }
+        }
+
+        engine.stop();
+    }
+
+}
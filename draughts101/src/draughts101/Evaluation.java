@@ -0,0 +1,175 @@
+package draughts101;
+
+import static draughts101.Board.GRID;
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.COLUMN;
+import static draughts101.MoveGenerator.DIRECTIONS;
+import static draughts101.MoveGenerator.ROW;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+
+/**
+ * Evaluation
+ *
+ * Value of a position for a color, with configurable weights.
+ * Piece-square values (man, king, advancement, center, back rank) are kept up to date by Position (make and unmake).
+ * At a leaf: tempo (color to move), outposts (man in the opponent's half covered by 2 men behind) and runaway men (nothing in the way to the promotion row).
+ *
+ * @author van Foeken
+ */
+
+final class Evaluation {
+    static enum Weight {
+        MAN(100),
+        KING(300),
+        ADVANCE(2),//per row
+        CENTER(4),
+        BACK_RANK(6),
+        TEMPO(3),
+        OUTPOST(8),
+        RUNAWAY(40);
+
+        final int value;//default
+
+        Weight(int value) {
+            this.value = value;
+        }
+    }
+
+    final private static int SQUARES = GRID * GRID / 2;
+
+    //[color]: opponent's half without the promotion row
+    final private static long[] FRONT = new long[2];
+    //[color][index]: 2 squares behind (0 on the edge), all squares ahead up to the promotion row
+    final private static long[][] SUPPORT = new long[2][SQUARES];
+    final private static long[][] PATH = new long[2][SQUARES];
+
+    static {
+        for (int color = 0; color < 2; color++) {
+            for (int i = 0; i < SQUARES; i++) {
+                int rows = color == WHITE ? i / COLUMN : ROW - i / COLUMN;//to promotion
+
+                for (MoveGenerator.Direction direction : DIRECTIONS) {
+                    if (direction.row != color * ROW && direction.canStep(i)) {
+                        SUPPORT[color][i] ^= direction.getStep(i);
+                    }
+                }
+
+                if (Long.bitCount(SUPPORT[color][i]) != 2) {
+                    SUPPORT[color][i] = 0l;
+                }
+
+                if (rows > 0 && rows < GRID / 2) {
+                    FRONT[color] ^= 1l << i;
+                }
+
+                for (long squares = 1l << i; squares != 0l; PATH[color][i] |= squares) {
+                    long next = 0l;
+
+                    for (long square = squares; square != 0l; square ^= Long.lowestOneBit(square)) {
+                        int index = Long.numberOfTrailingZeros(square);
+
+                        for (MoveGenerator.Direction direction : DIRECTIONS) {
+                            if (direction.row == color * ROW && direction.canStep(index)) {
+                                next |= direction.getStep(index);
+                            }
+                        }
+                    }
+
+                    squares = next;
+                }
+            }
+        }
+    }
+
+    final static Evaluation DEFAULT = new Evaluation(getWeights());
+
+    //default weights by ordinal
+    static int[] getWeights() {
+        int[] weights = new int[Weight.values().length];
+
+        for (Weight weight : Weight.values()) {
+            weights[weight.ordinal()] = weight.value;
+        }
+
+        return weights;
+    }
+
+    final private int[] weights;
+    final private int[][][] values = new int[2][2][SQUARES];//[color][man, king][index]
+
+    Evaluation(int[] weights) {
+        this.weights = weights.clone();
+
+        for (int color = 0; color < 2; color++) {
+            for (int i = 0; i < SQUARES; i++) {
+                int row = i / COLUMN;
+                int center = row >= 3 && row <= ROW - 3 && i % COLUMN >= 1 && i % COLUMN <= COLUMN - 2 ? weights[Weight.CENTER.ordinal()] : 0;
+
+                values[color][0][i] = weights[Weight.MAN.ordinal()] + weights[Weight.ADVANCE.ordinal()] * (color == WHITE ? ROW - row : row) + center + (row == ROW - color * ROW ? weights[Weight.BACK_RANK.ordinal()] : 0);
+                values[color][1][i] = weights[Weight.KING.ordinal()] + center;
+            }
+        }
+    }
+
+    int getWeight(Weight weight) {
+        return weights[weight.ordinal()];
+    }
+
+    //piece-square value of the pieces of color
+    int getValue(int color, long isColor, long kings) {
+        int value = 0;
+
+        for (long pieces = isColor; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int index = Long.numberOfTrailingZeros(pieces);
+
+            value += values[color][(int) (kings >>> index) & 1][index];
+        }
+
+        return value;
+    }
+
+    //change of the piece-square value of color - opponent by move of color
+    int getMoveValue(int color, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        int value = values[color][(int) (getKings(color, kings, move) >>> to) & 1][to] - values[color][(int) (kings >>> from) & 1][from];
+
+        for (long captures = getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            int capture = Long.numberOfTrailingZeros(captures);
+
+            value += values[1 - color][(int) (kings >>> capture) & 1][capture];
+        }
+
+        return value;
+    }
+
+    //outposts and runaway men of color
+    private int getMenValue(int color, long men, long occupied) {
+        int value = 0;
+
+        for (long front = men & FRONT[color]; front != 0l; front ^= Long.lowestOneBit(front)) {
+            int index = Long.numberOfTrailingZeros(front);
+
+            if (SUPPORT[color][index] != 0l && (men & SUPPORT[color][index]) == SUPPORT[color][index]) {
+                value += weights[Weight.OUTPOST.ordinal()];
+            }
+
+            if ((occupied & PATH[color][index]) == 0l) {
+                value += weights[Weight.RUNAWAY.ordinal()];
+            }
+        }
+
+        return value;
+    }
+
+    //value of position for color (to move)
+    int getValue(Position position, int color) {
+        long occupied = position.pieces[WHITE] | position.pieces[1 - WHITE];
+
+        return (color == WHITE ? position.value : -position.value) + weights[Weight.TEMPO.ordinal()] + getMenValue(color, position.pieces[color] & ~position.kings, occupied) - getMenValue(1 - color, position.pieces[1 - color] & ~position.kings, occupied);
+    }
+
+}
@@ -5,11 +5,22 @@ import static draughts101.Board.BLACK;
 import static draughts101.Board.BOARD;
 import static draughts101.Board.COLOR;
 import static draughts101.Board.GRID;
+import static draughts101.Board.LEVEL;
 import static draughts101.Board.MOVEABLE;
+import static draughts101.Board.PONDER;
+import static draughts101.Board.SMP;
+import static draughts101.Board.THREADS;
 import static draughts101.Board.WHITE;
 import static draughts101.Board.WINNER;
 import static draughts101.Board.x;
 import static draughts101.Board.y;
+import static draughts101.MoveGenerator.KING;
+import static draughts101.MoveGenerator.MAN;
+import static draughts101.MoveGenerator.getBitboard;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Cursor;
@@ -21,17 +32,28 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.swing.Timer;
 
 /**
  * Game
  * 
  * Loop and logic.
  * 
+ * Ponder: on the player's turn the AI searches its move after each reply of the player (predicted reply first, Search.TABLE).
+ * Ponder hit -> move at once (or after the search of that reply), miss -> ponder interrupted, normal search with the filled table.
+ * Move: the board at once, the animation (Timer, DELAY per step) plays while the next turn (search or ponder) starts.
+ * Searches, moves and pondering run on EXECUTOR (daemon threads), a new game or undo cancels them (stop), a cancelled task never continues the game.
+ * 
  * @author van Foeken
  */
 
@@ -42,9 +64,6 @@ final class Game extends Component implements ActionListener, MouseListener {
     final static char EMPTY = '_';
     
     final static String WB = W + "" + B;    
- 
-    final static char[] MAN = WB.toCharArray();
-    final static char[] KING = WB.toUpperCase().toCharArray();    
   
     final static Image[][] PIECE = new Image[WB.length()][2];
     
@@ -82,30 +101,75 @@ final class Game extends Component implements ActionListener, MouseListener {
     final private static Color ORANGE = Color.orange;
 
     final private static int NONE = -1;
-    final private static int DELAY = 320;
+    final private static int DELAY = 320;//ms per frame of the animation
+    
+    final private static long UNKNOWN = -1l;//not pondered
+
+    final private static Search SEARCH = new Search();//settings of the menu set per search, its pool kept for the next search
+    
+    //ai searches, moves and pondering of all games, threads reused
+    final private static ExecutorService EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "Game");
+        
+        thread.setDaemon(true);
+        
+        return thread;
+    });
 
     final private Stack<String> boards = new Stack();
     
     final private int player;
     
-    private char[] board = new char[BOARD.tile.length];
+    private char[] board;
     private ArrayList<Integer> move = new ArrayList();
     
-    final private HashSet<Integer>[] pieces = new HashSet[WB.length()];
-    private HashMap<Integer, ArrayList<Integer>[]> moves;
+    //board and move (highlighted) of one step of the animation
+    final private static class Frame {
+        final char[] board;
+        final ArrayList<Integer> move;
+        
+        Frame(char[] board, ArrayList<Integer> move) {
+            this.board = board.clone();
+            this.move = new ArrayList(move);
+        }
+    }
+    
+    final private ArrayDeque<Frame> frames = new ArrayDeque();//not yet shown
+    private volatile char[] shown;//frame on the screen, null: board
+    private volatile int game;//+1 per stop (lock of frames): a task of an earlier game doesn't move or continue
+    final private Timer animation = new Timer(DELAY, this::animate);
+    
+    final private MoveGenerator moveGenerator = new MoveGenerator();
+    
+    final private long[] pieces = new long[WB.length()];
+    private long[] moves;
+    private long moveable;//from of moves
     private int maxCapture;
     
     private int selected;
     
+    private volatile Future<?> task;//ai search or move, cancel(true): search stopped within 1024 nodes
+    private volatile Future<?> ponder;
+    private volatile boolean isPondering;//false: stop after the current reply
+    private volatile long pondering = UNKNOWN;//hash of the reply being searched
+    final private ConcurrentHashMap<Long, Long> pondered = new ConcurrentHashMap();//hash (ai to move) -> move
+    
     Game(int player) {
-        this.player = player;
+        this(player, new char[BOARD.tile.length]);
 
-        ARROW.setVisible(false);
-        ARROW.setEnabled(false);
-        
         Arrays.fill(board, 0, board.length / 2 - GRID / 2, B);
         Arrays.fill(board, board.length / 2 - GRID / 2, board.length / 2 + GRID / 2, EMPTY);
         Arrays.fill(board, board.length / 2 + GRID / 2, board.length, W);
+    }
+    
+    Game(int player, char[] board) {
+        this.player = player;
+        this.board = board;
+        
+        animation.setInitialDelay(0);
+
+        ARROW.setVisible(false);
+        ARROW.setEnabled(false);
 
         addComponentListener(new ComponentAdapter() {
             @Override
@@ -116,177 +180,281 @@ final class Game extends Component implements ActionListener, MouseListener {
     }
     
     private void turn(int color) {
-        pieces[WHITE] = new HashSet();
-        pieces[BLACK] = new HashSet();
-        
-        for (int i = 0; i < board.length; i++) {
-            if (board[i] != EMPTY) {
-                pieces[WB.indexOf(Character.toLowerCase(board[i]))].add(i);
-            }
-        }
+        setMoves(color);
         
         int opponent = 1 - color;
-
-        moves = new HashMap();
-        maxCapture = 0;
         
-        for (int from : pieces[color]) {
-            char piece = board[from];
+        if (BOARD.isAncestorOf(this)) {
+            if (moves.length == 0) {
+                WINNER.setText(COLOR[opponent] + " is Winner");
+            } else if (color == player) {
+                selected = NONE;
+                addMouseListener(this);
 
-            HashSet<ArrayList<Integer>> movesPiece = new HashSet();
-            int maxCapturePiece = maxCapture;
-            
-            for (Direction[] horizontal : new Direction[][] {{Direction.MIN_X_MIN_Y, Direction.MIN_X_PLUS_Y}, {Direction.PLUS_X_MIN_Y, Direction.PLUS_X_PLUS_Y}}) {
-                for (Direction vertical : horizontal) {
-                    if (vertical.canStep(from)) {
-                        int step = vertical.getStep(from);
-                        
-                        if(board[step] == EMPTY) {
-                            if (maxCapturePiece == 0 && (piece == KING[color] || vertical == horizontal[color])) {
-                                movesPiece.add(new ArrayList(Arrays.asList(new Integer[] {step})));
-                            }
+                repaint();
+                
+                if (PONDER.isSelected()) {
+                    ponder(color);
+                }
+            } else {                
+                setCursor(new Cursor(Cursor.WAIT_CURSOR));
+                
+                int game = this.game;
+                
+                task = EXECUTOR.submit(() -> {
+                    long kings = getKings(board);
+                    long move = getPondered(TranspositionTable.getHash(color, pieces[color], pieces[opponent], kings));
 
-                            if (piece == KING[color] && vertical.canStep(step)) {
-                                do {
-                                    step = vertical.getStep(step);
+                    if (move == UNKNOWN) {
+                        move = MinMax.getAIMove(getSearch(), color, pieces[color], pieces[opponent], kings, moves, null);
+                    }
 
-                                    if (maxCapturePiece == 0 && board[step] == EMPTY) {
-                                        movesPiece.add(new ArrayList(Arrays.asList(new Integer[] {step})));
-                                    }
-                                } while (board[step] == EMPTY && vertical.canStep(step));
-                            }
-                        }
+                    setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
 
-                        if (pieces[opponent].contains(step) && vertical.canStep(step)) {
-                            int capture = step;
+                    if (!Thread.currentThread().isInterrupted()) {
+                        play(game, color, getFrom(move), getPath(move));
+                    }
+                });
+            }
+            
+            if (moves.length == 0 || color == player) {
+                ARROW.setEnabled(true);
+            }
+        }
+    }
+       
+    //settings of the menu
+    private static Search getSearch() {
+        SEARCH.level = LEVEL.getValue();
+        SEARCH.threads = THREADS.getValue();
+        SEARCH.smp = SMP.isSelected();
+        
+        return SEARCH;
+    }
+    
+    //move of the ai after each move of the player, the move in the table (predicted by the last search) first
+    private void ponder(int player) {
+        stopPonder();
+        pondered.clear();
+        
+        Search search = getSearch();
+        Position position = new Position(player, pieces[player], pieces[1 - player], getKings(board));
+        long[] replies = moves.clone();
+        int predicted = TranspositionTable.getMove(search.table.get(position.hash));
+        
+        for (int i = 0; i < replies.length; i++) {
+            if ((getFrom(replies[i]) << 6 | getTo(replies[i])) == predicted) {
+                long reply = replies[i];
+                
+                replies[i] = replies[0];
+                replies[0] = reply;
+                
+                break;
+            }
+        }
+        
+        isPondering = true;
+        
+        ponder = EXECUTOR.submit(() -> {
+            MoveGenerator moveGenerator = new MoveGenerator();
+            int ai = 1 - player;
+            
+            Thread.currentThread().setPriority(Thread.MIN_PRIORITY);
+            
+            try {
+                for (long reply : replies) {
+                    if (!isPondering || Thread.currentThread().isInterrupted()) {
+                        break;
+                    }
 
-                            step = vertical.getStep(capture);
-                            
-                            if (board[step] == EMPTY) {
-                                ArrayList<Integer> captureMove = new ArrayList(Arrays.asList(new Integer[] {capture, step}));
+                    position.make(reply);
+                    pondering = position.hash;
 
-                                if (piece == KING[color] && vertical.canStep(step)) {
-                                    do {
-                                        step = vertical.getStep(step);
+                    long[] aiMoves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, ai, position.pieces[ai], position.pieces[player], position.kings));
 
-                                        if (board[step] == EMPTY) {
-                                            captureMove.add(step);
-                                        }
-                                    } while (board[step] == EMPTY && vertical.canStep(step));
-                                }
+                    if (aiMoves.length > 0) {
+                        long move = MinMax.getAIMove(search, ai, position.pieces[ai], position.pieces[player], position.kings, aiMoves, null);
 
-                                ArrayList<ArrayList<Integer>> captureMoves = new ArrayList(Arrays.asList(new ArrayList[] {captureMove}));
-
-                                board[from] = EMPTY;
-
-                                do {
-                                    ArrayList<Integer> destination = captureMoves.remove(0);
-                                    ArrayList<Integer> captured = new ArrayList();
-
-                                    do {
-                                        captured.add(destination.remove(0));
-                                    } while (pieces[opponent].contains(destination.get(0)));
-
-                                    if (captured.size() > maxCapturePiece) {
-                                        movesPiece.clear();                                       
-                                        maxCapturePiece++;
-                                    }
-
-                                    for (int to : destination) {
-                                        if (captured.size() == maxCapturePiece) {
-                                            ArrayList<Integer> move = new ArrayList(captured);
-                                            
-                                            move.add(to);
-                                            movesPiece.add(move);
-                                        }
-
-                                        for (Direction diagonal : Direction.values()) {
-                                            if (diagonal.canStep(to)) {
-                                                step = diagonal.getStep(to);                                                
-                                                
-                                                if (piece == KING[color] && !destination.contains(step)) {
-                                                    while (board[step] == EMPTY && diagonal.canStep(step)) {
-                                                        step = diagonal.getStep(step);
-                                                    }
-                                                }
-
-                                                if (pieces[opponent].contains(step) && !captured.contains(step) && diagonal.canStep(step)) {
-                                                    capture = step;
-                                                    step = diagonal.getStep(capture);
-
-                                                    if (board[step] == EMPTY) {
-                                                        captureMove = new ArrayList(captured);
-                                                        captureMove.addAll(Arrays.asList(new Integer[] {capture, step}));
-
-                                                        if (piece == KING[color] && diagonal.canStep(step)) {
-                                                            do {
-                                                                step = diagonal.getStep(step);
-                                                                
-                                                                if (board[step] == EMPTY) {
-                                                                    captureMove.add(step);
-                                                                }
-                                                            } while (board[step] == EMPTY && diagonal.canStep(step));
-                                                        }
-
-                                                        captureMoves.add(captureMove);
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                } while (!captureMoves.isEmpty());
-
-                                board[from] = piece;
-                            }
+                        if (!Thread.currentThread().isInterrupted()) {//completed
+                            pondered.put(position.hash, move);
                         }
                     }
+
+                    pondering = UNKNOWN;
+                    position.unmake();
                 }
+            } finally {
+                Thread.currentThread().setPriority(Thread.NORM_PRIORITY);
             }
+        });
+    }
+    
+    //cancel pondering (interrupt the search), the ponder thread stops within 1024 nodes
+    private void stopPonder() {
+        isPondering = false;
+        
+        if (ponder != null) {
+            ponder.cancel(true);
             
-            if (!movesPiece.isEmpty()) {
-                if (maxCapturePiece > maxCapture) {
-                    moves.clear();
-                    maxCapture = maxCapturePiece;
-                }
-
-                moves.put(from, movesPiece.toArray(new ArrayList[movesPiece.size()]));
+            ponder = null;
+        }
+    }
+    
+    //new game or undo: cancel the ai search (or move), pondering and the animation
+    void stop() {
+        synchronized (frames) {
+            game++;
+        }
+        
+        if (task != null) {
+            task.cancel(true);
+            
+            task = null;
+        }
+        
+        stopPonder();
+        pondered.clear();
+        
+        synchronized (frames) {
+            animation.stop();
+            frames.clear();
+            shown = null;
+        }
+    }
+    
+    //pondered move of the position (hash) or UNKNOWN, a search of this position is completed first
+    private long getPondered(long hash) {
+        isPondering = false;
+        
+        Future<?> ponder = this.ponder;
+        
+        this.ponder = null;
+        
+        if (ponder != null) {
+            if (pondering != hash) {
+                ponder.cancel(true);
+            } else {
+                try {
+                    ponder.get();
+                } catch (InterruptedException ex) {//stop
+                    ponder.cancel(true);
+                    Thread.currentThread().interrupt();
+                } catch (ExecutionException | CancellationException ex) {}
             }
         }
-
-        if (BOARD.isAncestorOf(this)) {
-            if (moves.isEmpty()) {
-                WINNER.setText(COLOR[opponent] + " is Winner");
-            } else if (color == player) {
-                selected = NONE;
-                addMouseListener(this);
-
-                repaint();
-            } else {                
-                setCursor(new Cursor(Cursor.WAIT_CURSOR));
-                        
-                new Thread() {
-                    @Override
-                    public void run() {
-                        ArrayList<Integer> move = MinMax.getAIMove(color, board.clone(), pieces, moves, maxCapture);
+        
+        Long move = pondered.get(hash);
+        
+        pondered.clear();
+        
+        return move == null ? UNKNOWN : move;
+    }
+    
+    //pieces, moves and maxCapture of color (MoveGenerator)
+    void setMoves(int color) {
+        pieces[WHITE] = getBitboard(board, WHITE);
+        pieces[BLACK] = getBitboard(board, BLACK);
+        
+        moves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, color, pieces[color], pieces[1 - color], getKings(board)));
+        maxCapture = moves.length == 0 ? 0 : Long.bitCount(getCaptures(moves[0]));
+        
+        moveable = 0l;
+        
+        for (long move : moves) {
+            moveable |= 1l << getFrom(move);
+        }
+    }
+    
+    //captures in order of capturing and to (move), the generator only knows which pieces are captured
+    private ArrayList<Integer> getPath(long move) {
+        int from = getFrom(move);
+        char piece = board[from];
+        
+        ArrayList<Integer> path = new ArrayList();
+        
+        board[from] = EMPTY;
+        getPath(from, getCaptures(move), getTo(move), Character.isUpperCase(piece), path);
+        board[from] = piece;
+        
+        path.add(getTo(move));
+        
+        return path;
+    }
+    
+    //captured pieces stay on the board until the move is complete
+    private boolean getPath(int from, long captures, int to, boolean isKing, ArrayList<Integer> path) {
+        if (captures == 0l) {
+            return from == to;
+        }
+        
+        for (Direction direction : Direction.values()) {
+            if (direction.canStep(from)) {
+                int capture = direction.getStep(from);
+                
+                while (isKing && board[capture] == EMPTY && direction.canStep(capture)) {
+                    capture = direction.getStep(capture);
+                }
                 
-                        setCursor(new Cursor(Cursor.DEFAULT_CURSOR));
-                        turn(move(color, move.remove(0), move));
+                if ((captures & 1l << capture) != 0l) {
+                    path.add(capture);
+                    
+                    for (int step = capture; direction.canStep(step) && board[direction.getStep(step)] == EMPTY; ) {
+                        step = direction.getStep(step);
+                        
+                        if (getPath(step, captures ^ 1l << capture, to, isKing, path)) {
+                            return true;
+                        } else if (!isKing) {
+                            break;
+                        }
                     }
-                }.start();
+                    
+                    path.remove(path.size() - 1);
+                }
             }
-            
-            if (moves.isEmpty() || color == player) {
-                ARROW.setEnabled(true);
+        }
+        
+        return false;
+    }
+    
+    //move (captures, to) of the player is one of the generated moves
+    private boolean isLegal(int from, ArrayList<Integer> move) {
+        long captures = 0l;
+        
+        for (int capture : move.subList(0, maxCapture)) {
+            captures ^= 1l << capture;
+        }
+        
+        long legal = MoveGenerator.getMove(from, captures, move.get(maxCapture));
+        
+        for (long generated : moves) {
+            if (generated == legal) {
+                return true;
             }
         }
+        
+        return false;
     }
-       
-    private int move(int color, int from, ArrayList<Integer> move) {
-        this.move.clear();
-
+    
+    //move and the next turn, unless stopped after the task of game was submitted
+    private void play(int game, int color, int from, ArrayList<Integer> move) {
+        if (move(game, color, from, move)) {
+            synchronized (frames) {
+                if (game == this.game) {
+                    turn(1 - color);
+                }
+            }
+        }
+    }
+    
+    //board (model) at once, the steps of the animation (each capture, to, each removed piece) as frames for the timer, false: stopped
+    private boolean move(int game, int color, int from, ArrayList<Integer> move) {
+        ArrayList<Frame> frames = new ArrayList();
+        ArrayList<Integer> shownMove = new ArrayList();
+        
+        char[] board = this.board.clone();
         char piece = board[from];
         
-        for (int i = 1; i < maxCapture; from = this.move.remove(i++)) {
+        for (int i = 1; i < maxCapture; from = shownMove.remove(i++)) {
             int capture = move.remove(0);
             Direction direction = Direction.getDirection(from, capture);
             int step = direction.getStep(capture);
@@ -295,52 +463,73 @@ final class Game extends Component implements ActionListener, MouseListener {
                 step = direction.getStep(step);
             }
             
-            this.move.addAll(Arrays.asList(new Integer[] {capture, step}));
+            shownMove.addAll(Arrays.asList(new Integer[] {capture, step}));
 
             board[from] = EMPTY;
             board[step] = piece;
 
-            repaint();
-
-            try {
-                Thread.sleep(DELAY);
-            } catch (Exception ex) {}
+            frames.add(new Frame(board, shownMove));
         }
         
-        this.move.addAll(move);
+        shownMove.addAll(move);
         
-        int to = this.move.get(maxCapture);
+        int to = shownMove.get(maxCapture);
         
         board[from] = EMPTY;
         board[to] = piece == MAN[color] && to / (GRID / 2) == color * (GRID - 1) ? KING[color] : piece;
         
-        repaint();
-        
-        try {
-            Thread.sleep(DELAY);
-        } catch (Exception ex) {}
+        frames.add(new Frame(board, shownMove));
         
         for (int i = 0; i < maxCapture; i++) {
-            board[this.move.remove(0)] = EMPTY;
+            board[shownMove.remove(0)] = EMPTY;
             
-            repaint();
+            frames.add(new Frame(board, shownMove));
+        }
         
-            try {
-                Thread.sleep(DELAY);
-            } catch (Exception ex) {}
+        synchronized (this.frames) {
+            if (game != this.game) {
+                return false;
+            }
+            
+            if (shown == null) {//the position before the move until the first frame
+                shown = this.board;
+            }
+            
+            this.frames.addAll(frames);
+            this.board = board;
+        }
+        
+        animation.start();
+        
+        return true;
+    }
+    
+    //next frame (timer, event dispatch thread), no frame left -> the board
+    private void animate(ActionEvent e) {
+        synchronized (frames) {
+            Frame frame = frames.poll();
+            
+            if (frame == null) {
+                animation.stop();
+                shown = null;
+            } else {
+                shown = frame.board;
+                move = frame.move;
+            }
         }
         
-        return 1 - color;
+        repaint();
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
         ARROW.setEnabled(false);
+        stop();
 
         move.clear();
         board = boards.pop().toCharArray();
         
-        if (moves.isEmpty()) {
+        if (moves.length == 0) {
             WINNER.setText("");
         } else {
             removeMouseListener(this);
@@ -354,9 +543,12 @@ final class Game extends Component implements ActionListener, MouseListener {
     }
 
     @Override
-    public void paint(Graphics g) {        
+    public void paint(Graphics g) {
+        char[] shown = this.shown;
+        char[] board = shown == null ? this.board : shown;
+        
         for (int i = 0; i < board.length; i++) {
-            if (move.contains(i) || (ARROW.isEnabled() && moves.containsKey(i) && (i == selected || (selected == NONE && MOVEABLE.isSelected())))) {
+            if (move.contains(i) || (ARROW.isEnabled() && (moveable & 1l << i) != 0l && (i == selected || (selected == NONE && MOVEABLE.isSelected())))) {
                 g.setColor(move.contains(i) ? MOVE[(move.indexOf(i) + 1) / move.size()] : ORANGE);
                 g.fillRect(BOARD.tile[i].x, BOARD.tile[i].y, BOARD.tile[i].width, BOARD.tile[i].height);
             }
@@ -372,6 +564,10 @@ final class Game extends Component implements ActionListener, MouseListener {
 
     @Override
     public void mousePressed(MouseEvent e) {
+        if (shown != null) {//animation
+            return;
+        }
+        
         for (int pressed = 0; pressed < BOARD.tile.length; pressed++) {
             if (BOARD.tile[pressed].contains(e.getPoint())) {
                 if (selected != NONE && (board[pressed] == EMPTY || pressed == selected)) {
@@ -389,7 +585,7 @@ final class Game extends Component implements ActionListener, MouseListener {
                             }
                         }
 
-                        if (pieces[1 - player].contains(step) && !move.contains(step)) {
+                        if ((pieces[1 - player] & 1l << step) != 0l && !move.contains(step)) {
                             move.add(step);                                
                             step = direction.getStep(step);
 
@@ -405,7 +601,7 @@ final class Game extends Component implements ActionListener, MouseListener {
                         if (step == pressed) {
                             move.add(pressed);
 
-                            if (move.indexOf(pressed) == maxCapture) {
+                            if (move.indexOf(pressed) == maxCapture && isLegal(selected, move)) {
                                 removeMouseListener(this);               
                                 ARROW.setEnabled(false);
 
@@ -415,12 +611,9 @@ final class Game extends Component implements ActionListener, MouseListener {
 
                                 boards.add(String.valueOf(board));
                                 
-                                new Thread() {
-                                    @Override
-                                    public void run() {
-                                        turn(move(player, selected, move));
-                                    }
-                                }.start();
+                                int game = this.game;
+                                
+                                task = EXECUTOR.submit(() -> play(game, player, selected, move));
                             } else {
                                 this.move = move;
 
@@ -431,7 +624,7 @@ final class Game extends Component implements ActionListener, MouseListener {
                 } else if (board[pressed] != EMPTY) {
                     move.clear();
                     
-                    if (moves.containsKey(pressed)) {
+                    if ((moveable & 1l << pressed) != 0l) {
                         selected = pressed;
                         move.add(selected);
                     } else {
@@ -1,27 +1,43 @@
 package draughts101;
 
 import static draughts101.Board.GRID;
-import static draughts101.Board.LEVEL;
-import static draughts101.Game.EMPTY;
-import static draughts101.Game.KING;
-import static draughts101.Game.MAN;
+import static draughts101.MoveGenerator.MAX_PLY;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getTo;
+import static draughts101.TranspositionTable.EXACT;
+import static draughts101.TranspositionTable.LOWER;
+import static draughts101.TranspositionTable.NONE;
+import static draughts101.TranspositionTable.UPPER;
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * MinMax
  * 
- * Minimax algoritme with alpha beta pruning, using bitboards
+ * Minimax algoritme with alpha beta pruning, using bitboards and a transposition table
  *
  * Special Thanx to Logic Crazy Chess!!
  * 
  * @author van Foeken
 */
 
-final class MinMax extends HashMap<String, Integer> {
+final class MinMax {
     final private static int INFINITY = Integer.MAX_VALUE;
+    
+    //move order: table move, killers, history
+    final private static int TABLE_MOVE = Integer.MAX_VALUE;
+    final private static int KILLER = Integer.MAX_VALUE - 2;
+    final private static int MAX_HISTORY = 1 << 24;//then halved
+    
+    final private static int SQUARES = GRID * GRID / 2;
+    
 
     private static enum Node {
         ALFA {
@@ -34,6 +50,11 @@ final class MinMax extends HashMap<String, Integer> {
             int valueOf(int value) {
                 return value;
             }
+
+            @Override
+            int toBound(int bound) {
+                return bound;
+            }
         },
         BETA {
             @Override
@@ -45,317 +66,497 @@ final class MinMax extends HashMap<String, Integer> {
             int valueOf(int value) {
                 return -value;
             }
+
+            @Override
+            int toBound(int bound) {
+                return bound == EXACT ? bound : bound ^ EXACT;
+            }
         };
         
         abstract int toAlfaBeta(int alfaBeta, int value);
         abstract int valueOf(int value);
+        abstract int toBound(int bound);//table stores value and bound as seen by the color to move
     }
     
-    final private static int COLUMN = GRID / 2;
-    final private static int ROW = GRID - 1;
+    //progress of getBestMoves
+    static interface Listener {
+        void iteration(int depth, int value, Statistics statistics, ArrayList<Long> bestMoves);
+    }
     
-    private static long middle = 0l;
-
-    static {
-        for (int i = COLUMN; i < ROW * COLUMN; i++) {
-            if (i % GRID != COLUMN - 1 && i % GRID != COLUMN) {
-                middle ^= 1l << i;
-            }
+    final private Node node;
+    final private int color;
+    
+    final private MoveGenerator moveGenerator;
+    final private int[][] alfaBeta = new int[MAX_PLY][Node.values().length];
+    
+    final private int[][] scores;//per ply, same index as the moves
+    final private int[][] killers = new int[MAX_PLY][2];//quiet moves (from << 6 | to) of a cutoff
+    final private int[] history = new int[SQUARES * SQUARES];//from * SQUARES + to, depth^2 per cutoff
+    
+    final private TranspositionTable table;
+    final private Cache cache;
+    final private Tablebase tablebase;
+    
+    final private Position position;//shared by alfa and beta, make and unmake per move
+    final private Evaluation evaluation;
+    final private Statistics statistics;//all threads: nodes per 1024, the other counters after each root move
+    final private AtomicBoolean isCancelled;//all threads: set when the search ends, the tasks on the pool (kept for the next search) stop
+    final private boolean pvs;
+    
+    private long deadline;
+    private long maxNodes;
+    private int nodes;
+    private int quiescenceNodes;//depth 0
+    private int reSearches;//null window probes searched again
+    private int probes;
+    private int hits;
+    private int stores;
+    private int cutoffs;
+    private int firstMoveCutoffs;
+    private int maxPly;
+    
+    private MinMax(Node node, int color, MoveGenerator moveGenerator, int[][] scores, Position position, Search search, Statistics statistics, AtomicBoolean isCancelled) {
+        this.node = node;
+        this.color = color;
+        this.moveGenerator = moveGenerator;
+        this.scores = scores;
+        this.position = position;
+        this.table = search.table;
+        this.cache = search.evaluation == Evaluation.DEFAULT ? search.cache : null;//values of other weights stay out of the file
+        this.tablebase = search.tablebase;
+        this.evaluation = search.evaluation;
+        this.statistics = statistics;
+        this.isCancelled = isCancelled;
+        this.pvs = search.pvs;
+    }
+    
+    //counts not yet added
+    private void addNodes() {
+        statistics.nodes.addAndGet(nodes % 1024);
+        statistics.quiescenceNodes.addAndGet(quiescenceNodes);
+        statistics.reSearches.addAndGet(reSearches);
+        
+        if (Statistics.ENABLED) {
+            statistics.probes.addAndGet(probes);
+            statistics.hits.addAndGet(hits);
+            statistics.stores.addAndGet(stores);
+            statistics.cutoffs.addAndGet(cutoffs);
+            statistics.firstMoveCutoffs.addAndGet(firstMoveCutoffs);
+            statistics.maxPly.accumulateAndGet(maxPly, Math::max);
         }
+        
+        nodes = 0;
+        quiescenceNodes = 0;
+        reSearches = 0;
+        probes = 0;
+        hits = 0;
+        stores = 0;
+        cutoffs = 0;
+        firstMoveCutoffs = 0;
     }
     
-    private static enum Direction {
-        MIN_X_MIN_Y(COLUMN, 0, -COLUMN) {
-            @Override
-            long getKingSteps(int index, long occupied, long from) {
-                long mask = LEFT_RIGHT[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
-
-                return mask & (occupied ^ Long.reverse(Long.reverse(mask & occupied) - Long.reverse(from)));
+    //move of a cutoff: killer (quiet move) and history
+    private void addCutoff(long move, int depth, int ply) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        
+        if ((move & MoveGenerator.CAPTURES) == 0l && killers[ply][0] != (from << 6 | to)) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = from << 6 | to;
+        }
+        
+        if ((history[from * SQUARES + to] += (depth + 1) * (depth + 1)) > MAX_HISTORY) {
+            for (int i = 0; i < history.length; i++) {
+                history[i] /= 2;
             }
-        }, 
-        PLUS_X_MIN_Y(COLUMN - 1, 0, -COLUMN + 1) {
-            @Override
-            long getKingSteps(int index, long occupied, long from) {
-                long mask = RIGHT_LEFT[index % COLUMN + index / GRID];
-
-                return mask & (occupied ^ Long.reverse(Long.reverse(mask & occupied) - Long.reverse(from)));
+        }
+    }
+    
+    private int valueOf(MinMax minMax, int alfa, int beta, int depth, int ply) {
+        if (++nodes % 1024 == 0 && (System.currentTimeMillis() > deadline || Thread.currentThread().isInterrupted() || isCancelled.get() || statistics.nodes.addAndGet(1024) > maxNodes)) {
+            throw new CancellationException();
+        }
+        
+        if (Statistics.ENABLED && ply > maxPly) {
+            maxPly = ply;
+        }
+        
+        long isColor = position.pieces[color];
+        long opponent = position.pieces[1 - color];
+        long kings = position.kings;
+        long hash = position.hash;
+        int plies = Math.max(0, 2 * depth - node.ordinal());//stored depth: an alfa node searches 2 * depth plies, a beta node 1 less
+        
+        if (tablebase != null && Long.bitCount(isColor ^ opponent) <= tablebase.getPieces()) {
+            int value = tablebase.getValue(color, isColor, opponent, kings);
+            
+            if (value != Tablebase.UNKNOWN) {
+                return node.valueOf(value);
             }
-        }, 
-        MIN_X_PLUS_Y(COLUMN, ROW, COLUMN) {
-            @Override
-            long getKingSteps(int index, long occupied, long from) {
-                long mask = RIGHT_LEFT[index % COLUMN + index / GRID];
-
-                return mask & (occupied ^ ((mask & occupied) - from));
+        }
+        
+        long entry = table.get(hash);
+        
+        if (cache != null && plies >= Cache.DEPTH && (entry == TranspositionTable.EMPTY || TranspositionTable.getDepth(entry) < plies)) {//deeper analysis of an earlier game or run?
+            long cached = cache.get(hash);
+            
+            if (cached != TranspositionTable.EMPTY && (entry == TranspositionTable.EMPTY || TranspositionTable.getDepth(cached) > TranspositionTable.getDepth(entry))) {
+                entry = cached;
             }
-        }, 
-        PLUS_X_PLUS_Y(COLUMN - 1, ROW, COLUMN + 1) {
-            @Override
-            long getKingSteps(int index, long occupied, long from) {
-                long mask = LEFT_RIGHT[COLUMN - 1 - index % COLUMN + index / COLUMN % 2 + index / GRID];
-
-                return mask & (occupied ^ ((mask & occupied) - from));
+        }
+        
+        if (Statistics.ENABLED) {
+            probes++;
+            hits += entry == TranspositionTable.EMPTY ? 0 : 1;
+        }
+        
+        if (entry != TranspositionTable.EMPTY && TranspositionTable.getDepth(entry) >= plies) {
+            int value = node.valueOf(TranspositionTable.getValue(entry));
+            int bound = node.toBound(TranspositionTable.getBound(entry));
+            
+            if (bound == EXACT || (bound == LOWER && value >= beta) || (bound == UPPER && value <= alfa)) {
+                return value;
             }
-        };
-
-        final int column;
-        final int row;
-        final int step;
-
-        Direction(int column, int row, int step) {
-            this.column = column;
-            this.row = row;
-            this.step = step;
         }
-
-        boolean canStep(int index) {
-            return index % GRID != column && index / COLUMN != row;
+        
+        int[] alfaBeta = this.alfaBeta[ply];
+        
+        alfaBeta[Node.ALFA.ordinal()] = alfa;
+        alfaBeta[Node.BETA.ordinal()] = beta;
+        
+        long[] moves = moveGenerator.getMoves(ply);
+        int size;
+        
+        if (depth > 0) {
+            size = moveGenerator.generate(ply, color, isColor, opponent, kings);
+        } else {//quiescence: captures only (they are compulsory), no capture -> stand pat (evaluation)
+            size = moveGenerator.generateCaptures(ply, color, isColor, opponent, kings);
+            quiescenceNodes++;
         }
-
-        long getStep(int index) {
-            return 1l << index + step - index / COLUMN % 2;
+        
+        if (size == 0 && (depth > 0 || !MoveGenerator.canMove(color, isColor, opponent, kings))) {
+            return alfaBeta[node.ordinal()];
+        } else if (size == 0 || ply == MAX_PLY - 1) {
+            int value = evaluation.getValue(position, color);
+            
+            table.put(hash, plies, value, EXACT, NONE);
+            
+            if (Statistics.ENABLED) {
+                stores++;
+            }
+            
+            return node.valueOf(value);
         }
         
-        abstract long getKingSteps(int index, long occupied, long from);
-
-        final private static long[] LEFT_RIGHT = new long[GRID];
-        final private static long[] RIGHT_LEFT = new long[GRID - 1];
-
-        static {
-            for (int i = 0; i < LEFT_RIGHT.length; i++) {
-                LEFT_RIGHT[i] = 0l;
-
-                for (int j = COLUMN - 1 - Math.min(i, COLUMN - 1) + i / COLUMN * COLUMN + Math.max(0, i - COLUMN) * GRID; Long.bitCount(LEFT_RIGHT[i]) < 1 + (Math.min(i, COLUMN - 1) - Math.max(0, i - COLUMN)) * 2; j += COLUMN + 1 - j / COLUMN % 2) {
-                    LEFT_RIGHT[i] ^= 1l << j;
+        int tableMove = TranspositionTable.getMove(entry);//previous best move
+        int[] killers = this.killers[ply];
+        int[] scores = this.scores[ply];
+        
+        for (int i = 0; i < size; i++) {
+            int from = getFrom(moves[i]);
+            int to = getTo(moves[i]);
+            
+            scores[i] = (from << 6 | to) == tableMove ? TABLE_MOVE : (from << 6 | to) == killers[0] ? KILLER : (from << 6 | to) == killers[1] ? KILLER - 1 : history[from * SQUARES + to];
+        }
+        
+        int bestMove = NONE;
+        
+        for (int i = 0; i < size; i++) {
+            for (int j = i + 1; j < size; j++) {//best remaining move next
+                if (scores[j] > scores[i]) {
+                    long move = moves[i];
+                    int score = scores[i];
+                    
+                    moves[i] = moves[j];
+                    scores[i] = scores[j];
+                    moves[j] = move;
+                    scores[j] = score;
+                }
+            }
+            
+            long move = moves[i];
+            
+            position.make(move);
+            
+            int alfaMove = alfaBeta[Node.ALFA.ordinal()];
+            int betaMove = alfaBeta[Node.BETA.ordinal()];
+            int value;
+            
+            if (i == 0 || !pvs) {
+                value = minMax.valueOf(this, alfaMove, betaMove, Math.max(0, depth - node.ordinal()), ply + 1);
+            } else {//pvs: null window, is it better than the first move? -> full window again
+                value = node == Node.ALFA ? minMax.valueOf(this, alfaMove, alfaMove + 1, Math.max(0, depth - node.ordinal()), ply + 1) : minMax.valueOf(this, betaMove - 1, betaMove, Math.max(0, depth - node.ordinal()), ply + 1);
+                
+                if (value > alfaMove && value < betaMove) {
+                    reSearches++;
+                    value = minMax.valueOf(this, alfaMove, betaMove, Math.max(0, depth - node.ordinal()), ply + 1);
                 }
             }
+            
+            position.unmake();
 
-            for (int i = 0; i < RIGHT_LEFT.length; i++) {
-                RIGHT_LEFT[i] = 0l;
+            if (node.toAlfaBeta(alfaBeta[node.ordinal()], value) != alfaBeta[node.ordinal()]) {
+                alfaBeta[node.ordinal()] = value;
+                bestMove = getFrom(move) << 6 | getTo(move);
+            }
 
-                for (int j = Math.min(i, COLUMN - 1) + Math.max(0, i - (COLUMN - 1)) * GRID; Long.bitCount(RIGHT_LEFT[i]) < 2 + (Math.min(i, COLUMN - 1) - Math.max(0, i - (COLUMN - 1))) * 2; j += COLUMN - j / COLUMN % 2) {
-                    RIGHT_LEFT[i] ^= 1l << j;
+            if (alfaBeta[Node.ALFA.ordinal()] >= alfaBeta[Node.BETA.ordinal()]) {
+                addCutoff(move, depth, ply);
+                
+                if (Statistics.ENABLED) {
+                    cutoffs++;
+                    firstMoveCutoffs += i == 0 ? 1 : 0;
                 }
+                
+                break;
             }
         }
+        
+        int value = alfaBeta[node.ordinal()];
+        
+        table.put(hash, plies, node.valueOf(value), node.toBound(value <= alfa ? UPPER : value >= beta ? LOWER : EXACT), bestMove);
+        
+        if (cache != null) {
+            cache.put(hash, plies, node.valueOf(value), node.toBound(value <= alfa ? UPPER : value >= beta ? LOWER : EXACT), bestMove);
+        }
+        
+        if (Statistics.ENABLED) {
+            stores++;
+        }
+        
+        return value;
     }
-
-    final private Node node;
-    final private int color;
     
-    private MinMax(Node node, int color) {
-        this.node = node;
-        this.color = color;
+    //alfa (ai) and beta (player) sharing one move generator, move scores and position, one pair per thread
+    private static MinMax[] getMinMax(Search search, int ai, Statistics statistics, AtomicBoolean isCancelled) {
+        MoveGenerator moveGenerator = new MoveGenerator();
+        int[][] scores = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+        Position position = new Position(search.evaluation);
+        
+        return new MinMax[] {new MinMax(Node.ALFA, ai, moveGenerator, scores, position, search, statistics, isCancelled), new MinMax(Node.BETA, 1 - ai, moveGenerator, scores, position, search, statistics, isCancelled)};
     }
     
-    private int valueOf(char[] board, long isColor, long opponent, MinMax minMax, int[] alfaBeta, int value, int depth) {
-        HashMap<Integer, HashSet<Long>> moves = new HashMap();
-        int maxCapture = 0;
+    //root move in window alfa, beta
+    //position set again per root move: a cancelled search leaves it unmade
+    private static int getValue(MinMax[] minMax, long isColor, long opponent, long kings, long move, int alfa, int beta, int depth, long deadline, long maxNodes) {
+        MinMax minMaxMax = minMax[Node.ALFA.ordinal()];
+        MinMax minMaxMin = minMax[Node.BETA.ordinal()];
+        
+        minMaxMax.position.set(minMaxMax.color, isColor, opponent, kings);
+        minMaxMax.position.make(move);
+        
+        minMaxMax.deadline = minMaxMin.deadline = deadline;
+        minMaxMax.maxNodes = minMaxMin.maxNodes = maxNodes;
+
+        try {
+            return minMaxMin.valueOf(minMaxMax, alfa, beta, depth, 0);
+        } finally {
+            minMaxMax.addNodes();
+            minMaxMin.addNodes();
+        }
+    }
     
-        for (long empty = ~(isColor ^ opponent), pieces = isColor; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
-            int from = Long.numberOfTrailingZeros(pieces);
-            boolean isKing = board[from] == KING[color];
- 
-            HashSet<Long> movesPiece = new HashSet();
-            int maxCapturePiece = maxCapture;
-
-            for (Direction[] horizontal : new Direction[][] {{Direction.MIN_X_MIN_Y, Direction.MIN_X_PLUS_Y}, {Direction.PLUS_X_MIN_Y, Direction.PLUS_X_PLUS_Y}}) {
-                for (Direction vertical : horizontal) {
-                    if (vertical.canStep(from)) {
-                        long move = vertical.getStep(from);
-
-                        if (isKing && (move & empty & middle) == move) {
-                            move = vertical.getKingSteps(from, ~empty, move);
-                        }
-                       
-                        long capture = move & opponent;
-                        
-                        if ((capture & middle) != 0l) {
-                            long step = vertical.getStep(Long.numberOfTrailingZeros(capture));
-                            
-                            if ((step & empty) == step) {
-                                if (isKing && (step & middle) == step) {
-                                    step = vertical.getKingSteps(from, ~empty, step) & empty;
-                                }
-                                
-                                ArrayList<Long> captureMoves = new ArrayList(Arrays.asList(new Long[] {capture ^ step}));
-                                
-                                empty ^= 1l << from;
-                                
-                                do {
-                                    move = captureMoves.remove(0);
-
-                                    long captures = move & opponent;
-                
-                                    if (Long.bitCount(captures) >= maxCapturePiece) {
-                                        if (Long.bitCount(captures) > maxCapturePiece) {
-                                            movesPiece.clear();
-                                            maxCapturePiece++;
-                                        }
-                                        
-                                        movesPiece.add(move);
-                                    }
-                                    
-                                    for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
-                                        int to = Long.numberOfTrailingZeros(destination);
-
-                                        for (Direction diagonal : Direction.values()) {
-                                            if (diagonal.canStep(to)) {
-                                                step = diagonal.getStep(to);
-                                                
-                                                if (isKing && (step & empty & middle) == step) {
-                                                    step = diagonal.getKingSteps(to, ~empty, step);
-                                                }
-
-                                                if ((step & move) == 0l) {
-                                                    capture = step & opponent;
-
-                                                    if ((capture & middle) != 0l) {
-                                                        step = diagonal.getStep(Long.numberOfTrailingZeros(capture));
-
-                                                        if ((step & empty) == step) {
-                                                            if (isKing && (step & middle) == step) {
-                                                                step = diagonal.getKingSteps(to, ~empty, step) & empty;
-                                                            }
-
-                                                            captureMoves.add(captures ^ capture ^ step);
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                } while (!captureMoves.isEmpty());
-                                
-                                empty ^= 1l << from;
-                            }
-                        }
-            
-                        if (maxCapturePiece == 0 && (isKing || vertical == horizontal[color])) {
-                            move &= empty;
-
-                            if (move != 0l) {
-                                movesPiece.add(move);
-                            }
-                        }
-                    }
-                }
-            }
-            
-            if (!movesPiece.isEmpty()) {
-                if (maxCapturePiece > maxCapture) {
-                    moves.clear();
-                    maxCapture = maxCapturePiece;
-                }
-                
-                moves.put(from, movesPiece);
-            }
+    //root move after max, alfa = max - 1: moves as good as max still get their exact value
+    //pvs: null window max - 1, max first, only a move as good as max is searched again
+    private static int getValue(MinMax[] minMax, long isColor, long opponent, long kings, long move, int max, int depth, long deadline, long maxNodes) {
+        if (max == -INFINITY || !minMax[Node.ALFA.ordinal()].pvs) {
+            return getValue(minMax, isColor, opponent, kings, move, max == -INFINITY ? max : max - 1, INFINITY, depth, deadline, maxNodes);
         }
         
-        if (moves.isEmpty()) {
-            return alfaBeta[node.ordinal()];
-        } else if (depth > 0) {
-            depth -= node.ordinal();
-        } else if (maxCapture == 0) {
+        int value = getValue(minMax, isColor, opponent, kings, move, max - 1, max, depth, deadline, maxNodes);
+        
+        if (value < max) {
             return value;
         }
         
-        value += node.valueOf(maxCapture);
+        minMax[Node.ALFA.ordinal()].reSearches++;
         
-        for (int from : moves.keySet()) {
-            char piece = board[from];
-            
-            board[from] = EMPTY;
+        try {
+            return getValue(minMax, isColor, opponent, kings, move, max - 1, INFINITY, depth, deadline, maxNodes);
+        } finally {
+            minMax[Node.ALFA.ordinal()].addNodes();
+        }
+    }
+    
+    //first root move: aspiration window around the value of the previous iteration, full window again if the value is outside
+    private static int getAspirationValue(MinMax[] minMax, long isColor, long opponent, long kings, long move, int previous, int window, int depth, long deadline, long maxNodes, Statistics statistics) {
+        if (previous == -INFINITY || window <= 0) {
+            return getValue(minMax, isColor, opponent, kings, move, -INFINITY, INFINITY, depth, deadline, maxNodes);
+        }
+        
+        int alfa = previous - window;
+        int beta = previous + window;
+        int value = getValue(minMax, isColor, opponent, kings, move, alfa, beta, depth, deadline, maxNodes);
+        
+        if (value > alfa && value < beta) {
+            return value;
+        }
+        
+        statistics.aspirationReSearches.incrementAndGet();
+        
+        return getValue(minMax, isColor, opponent, kings, move, -INFINITY, INFINITY, depth, deadline, maxNodes);
+    }
+    
+    //lazy smp helper: same position, other depth and root order, until cancelled
+    private static void help(MinMax[] minMax, long isColor, long opponent, long kings, ArrayList<Long> helperMoves, int level, int helper) {
+        Collections.rotate(helperMoves, helper);
+        
+        for (int depth = 1 + helper % 2; depth <= level + 1; depth++) {
+            int max = -INFINITY;
             
-            for (long move : moves.get(from)) {
-                long captures = move & opponent;
-                ArrayList<Integer> captured = new ArrayList();
-                
-                for (long l = captures; l != 0l; l ^= Long.lowestOneBit(l)) {
-                    captured.add(Long.numberOfTrailingZeros(l));
-                }
-                
-                for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
-                    int to = Long.numberOfTrailingZeros(destination);
-                    String key = String.valueOf(getBoard(color, board.clone(), piece, captured, to));
-                    
-                    if (!containsKey(key)) {
-                        put(key, minMax.valueOf(key.toCharArray(), opponent ^ captures, isColor ^ (1l << from ^ 1l << to), this, alfaBeta.clone(), value, depth));
-                    }
-                    
-                    alfaBeta[node.ordinal()] = node.toAlfaBeta(alfaBeta[node.ordinal()], get(key));
-                    
-                    if (alfaBeta[Node.ALFA.ordinal()] >= alfaBeta[Node.BETA.ordinal()]) {
-                        return alfaBeta[node.ordinal()];
-                    }
-                }
+            for (long move : helperMoves) {
+                max = Math.max(max, getValue(minMax, isColor, opponent, kings, move, max, depth, Long.MAX_VALUE, Long.MAX_VALUE));
             }
-            
-            board[from] = piece;
         }
-        
-        return alfaBeta[node.ordinal()];
     }
     
-    private static char[] getBoard(int color, char[] board, char piece, ArrayList<Integer> captured, int to) {
-        board[to] = piece == MAN[color] && to / COLUMN == color * ROW ? KING[color] : piece;
-        captured.forEach(capture -> board[capture] = EMPTY);
+    //book move or one of the best moves
+    static long getAIMove(Search search, int ai, long isColor, long opponent, long kings, long[] moves, Listener listener) {
+        long move = search.book == null ? Book.NONE : search.book.getMove(ai, isColor, opponent, kings, moves);
+        
+        if (move != Book.NONE) {
+            return move;
+        }
+        
+        ArrayList<Long> bestMoves = getBestMoves(search, ai, isColor, opponent, kings, moves, listener);
         
-        return board;
+        return bestMoves.get((int) (Math.random() * bestMoves.size()));
     }
     
-    static ArrayList<Integer> getAIMove(int ai, char[] board, HashSet<Integer>[] pieces, HashMap<Integer, ArrayList<Integer>[]> moves, int maxCapture) {
-        int player = 1 - ai;
+    //iterative deepening: depth 1, 2, ... level until time (ms) or nodes run out, best move(s) of the last completed depth
+    //threads > 1: root moves in parallel on the ForkJoinPool of the Search, sharing alfa
+    //smp: threads - 1 helpers (same pool) search the same tree, the table is shared without locks
+    //moves: legal moves of ai (MoveGenerator)
+    //listener (optional): called after each completed depth
+    //interrupt of the calling thread cancels the search within 1024 nodes, the interrupt stays set
+    static ArrayList<Long> getBestMoves(Search search, int ai, long isColor, long opponent, long kings, long[] moves, Listener listener) {
+        long start = System.currentTimeMillis();
+        
+        int level = search.level;
+        long time = search.time;
+        long nodes = search.nodes;
+        int threads = search.threads;
+        boolean smp = search.smp;
+        int window = search.aspiration;
         
-        long isColor = 0l;
-        long opponent = 0l;
+        Statistics statistics = new Statistics();
+        AtomicBoolean isCancelled = new AtomicBoolean();
+        ThreadLocal<MinMax[]> minMax = ThreadLocal.withInitial(() -> getMinMax(search, ai, statistics, isCancelled));
         
-        for (int index : pieces[ai]) {
-            isColor ^= 1l << index;
+        ArrayList<Long> aiMoves = new ArrayList();
+        
+        for (long move : moves) {
+            aiMoves.add(move);
         }
         
-        for (int index : pieces[player]) {
-            opponent ^= 1l << index;
+        ArrayList<Long> bestMoves = new ArrayList(aiMoves);
+        HashMap<Long, Integer> values = new HashMap();
+        
+        ForkJoinPool pool = threads > 1 && !smp ? search.getPool() : null;
+        ArrayList<Future<Integer>> futures = new ArrayList();//root moves on the pool, cancelled at the end
+        ForkJoinPool helpers = threads > 1 && smp ? search.getPool() : null;
+        ArrayList<Future<?>> helping = new ArrayList();//smp helpers on the pool, cancelled at the end
+        
+        for (int i = 1; helpers != null && i < threads && aiMoves.size() > 1; i++) {
+            int helper = i;
+            ArrayList<Long> helperMoves = new ArrayList(aiMoves);
+            
+            helping.add(helpers.submit(() -> help(minMax.get(), isColor, opponent, kings, helperMoves, level, helper)));
         }
         
-        MinMax minMaxMax = new MinMax(Node.ALFA, ai);
-        MinMax minMaxMin = new MinMax(Node.BETA, player);
+        try {
+            int previous = -INFINITY;
+            
+            for (int depth = 1; depth <= level && aiMoves.size() > 1; depth++) {
+                int iteration = depth;
+                long deadline = depth == 1 || time >= Long.MAX_VALUE - start ? Long.MAX_VALUE : start + time;
+                long maxNodes = depth == 1 ? Long.MAX_VALUE : nodes;
+                int max = -INFINITY;
+
+                if (pool == null) {
+                    for (long move : aiMoves) {
+                        int value = max == -INFINITY ? getAspirationValue(minMax.get(), isColor, opponent, kings, move, previous, window, depth, deadline, maxNodes, statistics) : getValue(minMax.get(), isColor, opponent, kings, move, max, depth, deadline, maxNodes);
+
+                        values.put(move, value);
+                        max = Math.max(max, value);
+                    }
+                } else {
+                    //best move first, then the others in parallel
+                    max = getAspirationValue(minMax.get(), isColor, opponent, kings, aiMoves.get(0), previous, window, depth, deadline, maxNodes, statistics);
+                    values.put(aiMoves.get(0), max);
 
-        ArrayList<ArrayList<Integer>> aiMoves = new ArrayList();
-        int max = -INFINITY;
+                    AtomicInteger alfa = new AtomicInteger(max);
 
-        for (int from : moves.keySet()) {
-            char piece = board[from];
-            
-            board[from] = EMPTY;
-            
-            for (ArrayList<Integer> move : moves.get(from)) {
-                int to = move.remove(maxCapture);
-                long captures = 0l;
-                
-                for (int capture : move) {
-                    captures ^= 1l << capture;
+                    futures.clear();
+
+                    for (long move : aiMoves.subList(1, aiMoves.size())) {
+                        futures.add(pool.submit(() -> {
+                            int value = getValue(minMax.get(), isColor, opponent, kings, move, alfa.get(), iteration, deadline, maxNodes);
+
+                            alfa.accumulateAndGet(value, Math::max);
+
+                            return value;
+                        }));
+                    }
+
+                    //get (not invokeAll): an interrupt of the calling thread ends the wait, isCancelled stops the tasks
+                    try {
+                        for (int i = 0; i < futures.size(); i++) {
+                            values.put(aiMoves.get(i + 1), futures.get(i).get());
+                        }
+                    } catch (InterruptedException ex) {
+                        Thread.currentThread().interrupt();
+
+                        throw new CancellationException();
+                    } catch (ExecutionException ex) {
+                        if (ex.getCause() instanceof RuntimeException) {
+                            throw (RuntimeException) ex.getCause();
+                        }
+
+                        throw new CancellationException();
+                    }
+
+                    max = alfa.get();
                 }
                 
-                int min = minMaxMin.valueOf(getBoard(ai, board.clone(), piece, move, to), opponent ^ captures, isColor ^ (1l << from ^ 1l << to), minMaxMax, new int[] {-INFINITY, INFINITY}, maxCapture, LEVEL.getValue());
+                aiMoves.sort((move1, move2) -> Integer.compare(values.get(move2), values.get(move1)));
+                
+                bestMoves.clear();
                 
-                if (min >= max) {
-                    if (min > max) {
-                        aiMoves.clear();
-                        max = min;
+                for (long move : aiMoves) {
+                    if (values.get(move) == max) {
+                        bestMoves.add(move);
                     }
-                    
-                    move.add(0, from);
-                    move.add(to);
-                    
-                    aiMoves.add(move);
                 }
+                
+                statistics.iteration();
+                
+                if (listener != null) {
+                    listener.iteration(depth, max, statistics, bestMoves);
+                }
+                
+                previous = max;
+
+                if (max == INFINITY || max == -INFINITY || System.currentTimeMillis() - start > time / 2) {
+                    break;
+                }
+            }
+        } catch (CancellationException ex) {
+        } finally {
+            isCancelled.set(true);
+
+            for (Future<Integer> future : futures) {
+                future.cancel(true);
             }
 
-            board[from] = piece;
+            for (Future<?> helper : helping) {
+                helper.cancel(true);
+            }
+            
+            statistics.stop();
         }
 
-        return aiMoves.get((int) (Math.random() * aiMoves.size()));
+        return bestMoves;
     }
     
 }
@@ -0,0 +1,368 @@
+package draughts101;
+
+import static draughts101.Board.GRID;
+import static draughts101.Game.WB;
+import java.util.Random;
+
+/**
+ * MoveGenerator
+ * 
+ * Legal moves (bitboards) into preallocated buffers, one long[] per ply, so generating moves doesn't allocate.
+ * 
+ * Move: captures (bit 0-49), from (bit 50-55), to (bit 56-61).
+ * Capture sequences are followed with a fixed-size stack (captures ^ destinations).
+ * 
+ * @author van Foeken
+ */
+
+final class MoveGenerator {
+    final static int MAX_PLY = 128;
+    final static int MAX_MOVES = 512;
+    
+    final static long CAPTURES = (1l << GRID * GRID / 2) - 1;
+
+    final private static int SQUARES = GRID * GRID / 2;
+    final private static int FROM = SQUARES;
+    final private static int TO = FROM + 6;
+
+    //board characters per color (Game.WB is a constant: Game and AWT aren't loaded)
+    final static char[] MAN = WB.toCharArray();
+    final static char[] KING = WB.toUpperCase().toCharArray();
+
+    final static int COLUMN = GRID / 2;
+    final static int ROW = GRID - 1;
+    
+    private static long middle = 0l;
+
+    static {
+        for (int i = COLUMN; i < ROW * COLUMN; i++) {
+            if (i % GRID != COLUMN - 1 && i % GRID != COLUMN) {
+                middle ^= 1l << i;
+            }
+        }
+    }
+    
+    static enum Direction {
+        MIN_X_MIN_Y(COLUMN, 0, -COLUMN), 
+        PLUS_X_MIN_Y(COLUMN - 1, 0, -COLUMN + 1), 
+        MIN_X_PLUS_Y(COLUMN, ROW, COLUMN), 
+        PLUS_X_PLUS_Y(COLUMN - 1, ROW, COLUMN + 1);
+
+        final int column;
+        final int row;
+        final int step;
+        
+        final private long even;//squares that can step, even and odd rows (step - 1)
+        final private long odd;
+        
+        //per square: step (0l: none), king slides by occupied squares of the ray (magic index: (occupied & mask) * magic >>> shift)
+        final private long[] steps = new long[SQUARES];
+        final private long[] masks = new long[SQUARES];
+        final private long[] magics = new long[SQUARES];
+        final private int[] shifts = new int[SQUARES];
+        final private long[][] slides = new long[SQUARES][];
+
+        Direction(int column, int row, int step) {
+            this.column = column;
+            this.row = row;
+            this.step = step;
+            
+            for (int i = 0; i < SQUARES; i++) {
+                steps[i] = i % GRID != column && i / COLUMN != row ? 1l << i + step - i / COLUMN % 2 : 0l;
+            }
+            
+            even = getSquares(0);
+            odd = getSquares(1);
+            
+            Random random = new Random(101 + ordinal());
+            
+            for (int i = 0; i < SQUARES; i++) {
+                for (long ray = steps[i]; ray != 0l && steps[Long.numberOfTrailingZeros(ray)] != 0l; ray = steps[Long.numberOfTrailingZeros(ray)]) {
+                    masks[i] |= ray;//last square of the ray doesn't matter
+                }
+                
+                shifts[i] = 64 - Long.bitCount(masks[i]);
+                
+                do {
+                    magics[i] = random.nextLong() & random.nextLong() & random.nextLong();
+                } while (!isMagic(i));
+            }
+        }
+        
+        private long getSquares(int parity) {
+            long squares = 0l;
+            
+            for (int i = 0; i < COLUMN * GRID; i++) {
+                if (i / COLUMN % 2 == parity && canStep(i)) {
+                    squares ^= 1l << i;
+                }
+            }
+            
+            return squares;
+        }
+        
+        //slides of all occupied squares (subsets of the mask) without a collision
+        private boolean isMagic(int index) {
+            long[] slides = new long[1 << 64 - shifts[index]];
+            long occupied = 0l;
+            
+            do {
+                long slide = 0l;
+                
+                for (long square = steps[index]; square != 0l; square = steps[Long.numberOfTrailingZeros(square)]) {
+                    slide |= square;
+                    
+                    if ((square & occupied) != 0l) {
+                        break;
+                    }
+                }
+                
+                int magic = (int) (occupied * magics[index] >>> shifts[index]);
+                
+                if (slides[magic] != 0l && slides[magic] != slide) {
+                    return false;
+                }
+                
+                slides[magic] = slide;
+                occupied = occupied - masks[index] & masks[index];//next subset
+            } while (occupied != 0l);
+            
+            this.slides[index] = slides;
+            
+            return true;
+        }
+        
+        //all squares one step from squares
+        long getSteps(long squares) {
+            return step > 0 ? (squares & even) << step | (squares & odd) << step - 1 : (squares & even) >>> -step | (squares & odd) >>> 1 - step;
+        }
+
+        boolean canStep(int index) {
+            return steps[index] != 0l;
+        }
+
+        long getStep(int index) {
+            return steps[index];
+        }
+        
+        //squares of the ray from index up to the first occupied square (inclusive)
+        long getKingSteps(int index, long occupied) {
+            return slides[index][(int) ((occupied & masks[index]) * magics[index] >>> shifts[index])];
+        }
+    }
+
+    final static Direction[] DIRECTIONS = Direction.values();//values() clones
+    final private static Direction[][] HORIZONTAL = {{Direction.MIN_X_MIN_Y, Direction.MIN_X_PLUS_Y}, {Direction.PLUS_X_MIN_Y, Direction.PLUS_X_PLUS_Y}};
+    
+    final private long[][] moves = new long[MAX_PLY][MAX_MOVES];
+    final private long[] stack = new long[1024];
+
+    long[] getMoves(int ply) {
+        return moves[ply];
+    }
+    
+    //moves of color into getMoves(ply), returns the number of moves (maximum capture only)
+    int generate(int ply, int color, long isColor, long opponent, long kings) {
+        long[] moves = this.moves[ply];
+        int size = 0;
+        int maxCapture = 0;
+    
+        for (long empty = ~(isColor ^ opponent), pieces = isColor; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            boolean isKing = (kings & 1l << from) != 0l;
+            
+            for (Direction[] horizontal : HORIZONTAL) {
+                for (Direction vertical : horizontal) {
+                    if (vertical.canStep(from)) {
+                        long move = isKing ? vertical.getKingSteps(from, ~empty) : vertical.getStep(from);
+                        long capture = move & opponent;
+                        
+                        if ((capture & middle) != 0l) {
+                            long step = vertical.getStep(Long.numberOfTrailingZeros(capture));
+                            
+                            if ((step & empty) == step) {
+                                if (isKing) {
+                                    step = vertical.getKingSteps(Long.numberOfTrailingZeros(capture), ~empty) & empty;
+                                }
+                                
+                                int top = 0;
+                                
+                                stack[top++] = capture ^ step;
+                                empty ^= 1l << from;
+                                
+                                do {
+                                    move = stack[--top];
+
+                                    long captures = move & opponent;
+                
+                                    if (Long.bitCount(captures) >= maxCapture) {
+                                        if (Long.bitCount(captures) > maxCapture) {
+                                            size = 0;
+                                            maxCapture = Long.bitCount(captures);
+                                        }
+                                        
+                                        for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                                            size = add(moves, size, getMove(from, captures, Long.numberOfTrailingZeros(destination)));
+                                        }
+                                    }
+                                    
+                                    for (long destination = move ^ captures; destination != 0l; destination ^= Long.lowestOneBit(destination)) {
+                                        int to = Long.numberOfTrailingZeros(destination);
+
+                                        for (Direction diagonal : DIRECTIONS) {
+                                            if (diagonal.canStep(to)) {
+                                                step = isKing ? diagonal.getKingSteps(to, ~empty) : diagonal.getStep(to);
+
+                                                if ((step & move) == 0l) {
+                                                    capture = step & opponent;
+
+                                                    if ((capture & middle) != 0l) {
+                                                        step = diagonal.getStep(Long.numberOfTrailingZeros(capture));
+
+                                                        if ((step & empty) == step) {
+                                                            if (isKing) {
+                                                                step = diagonal.getKingSteps(Long.numberOfTrailingZeros(capture), ~empty) & empty;
+                                                            }
+
+                                                            stack[top++] = captures ^ capture ^ step;
+                                                        }
+                                                    }
+                                                }
+                                            }
+                                        }
+                                    }
+                                } while (top > 0);
+                                
+                                empty ^= 1l << from;
+                            }
+                        }
+            
+                        if (maxCapture == 0 && (isKing || vertical == horizontal[color])) {
+                            for (move &= empty; move != 0l; move ^= Long.lowestOneBit(move)) {
+                                moves[size++] = getMove(from, 0l, Long.numberOfTrailingZeros(move));
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        
+        return size;
+    }
+    
+    //captures of color into getMoves(ply), returns the number of captures (0 without generating if there isn't any)
+    int generateCaptures(int ply, int color, long isColor, long opponent, long kings) {
+        if (!canCapture(isColor, opponent, kings)) {
+            return 0;
+        }
+        
+        return generate(ply, color, isColor, opponent, kings);
+    }
+    
+    //men: opponent next and empty behind in a direction, kings: first piece on a diagonal is an opponent with empty behind
+    static boolean canCapture(long isColor, long opponent, long kings) {
+        long empty = ~(isColor ^ opponent);
+        long men = isColor & ~kings;
+        
+        for (Direction direction : DIRECTIONS) {
+            if ((direction.getSteps(direction.getSteps(men) & opponent) & empty) != 0l) {
+                return true;
+            }
+        }
+        
+        for (long pieces = isColor & kings; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int from = Long.numberOfTrailingZeros(pieces);
+            
+            for (Direction direction : DIRECTIONS) {
+                long capture = direction.getKingSteps(from, ~empty) & opponent;
+                
+                if ((capture & middle) != 0l && (direction.getStep(Long.numberOfTrailingZeros(capture)) & empty) != 0l) {
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    //a man can step forward or a king can step
+    static boolean canMove(int color, long isColor, long opponent, long kings) {
+        long empty = ~(isColor ^ opponent);
+        
+        for (Direction direction : DIRECTIONS) {
+            if ((direction.getSteps(direction.row == color * ROW ? isColor : isColor & kings) & empty) != 0l) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    //same captures, from and to by another path is the same move
+    private static int add(long[] moves, int size, long move) {
+        for (int i = size - 1; i >= 0 && (moves[i] & CAPTURES) != 0l; i--) {
+            if (moves[i] == move) {
+                return size;
+            }
+        }
+        
+        moves[size] = move;
+        
+        return size + 1;
+    }
+    
+    static long getMove(int from, long captures, int to) {
+        return captures ^ (long) from << FROM ^ (long) to << TO;
+    }
+    
+    //kings after move of color (captured kings removed, king moved, man promoted)
+    static long getKings(int color, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        
+        return (kings & ~getCaptures(move) & ~(1l << from)) | ((kings & 1l << from) != 0l || to / COLUMN == color * ROW ? 1l << to : 0l);
+    }
+    
+    //pieces of color on board (Game)
+    static long getBitboard(char[] board, int color) {
+        long bitboard = 0l;
+        
+        for (int i = 0; i < board.length; i++) {
+            if (board[i] == MAN[color] || board[i] == KING[color]) {
+                bitboard ^= 1l << i;
+            }
+        }
+        
+        return bitboard;
+    }
+    
+    static long getKings(char[] board) {
+        long kings = 0l;
+        
+        for (int i = 0; i < board.length; i++) {
+            if (Character.isUpperCase(board[i])) {
+                kings ^= 1l << i;
+            }
+        }
+        
+        return kings;
+    }
+    
+    //square numbers 1-50: 32-28, 28x19x10
+    static String toString(long move) {
+        return (getFrom(move) + 1) + (getCaptures(move) == 0l ? "-" : "x") + (getTo(move) + 1);
+    }
+    
+    static long getCaptures(long move) {
+        return move & CAPTURES;
+    }
+    
+    static int getFrom(long move) {
+        return (int) (move >>> FROM) & 0x3F;
+    }
+    
+    static int getTo(long move) {
+        return (int) (move >>> TO) & 0x3F;
+    }
+
+}
@@ -0,0 +1,308 @@
+package draughts101;
+
+import static draughts101.Board.GRID;
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.COLUMN;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getTo;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Pdn
+ *
+ * Positions (FEN) and games (PDN) in the notation of the draughts databases: squares 1-50, black on 1-20 and white on 31-50 at the start.
+ *
+ * FEN: W:W31-50:B1-20 -> color to move, pieces of white and black (K: king, a-b: range), optional dot at the end.
+ * PDN: tags ([Event "..."], [FEN "..."]), move numbers, moves (32-28, 19x28, 19x30x28), comments {...}, variations (...), results (2-0, 0-2, 1-1, *).
+ * A FEN outside the tags is a position of its own (no moves), so a file of positions (1 per line) is read the same way.
+ *
+ * Games are read one at a time (next), the size of the input doesn't matter.
+ *
+ * @author van Foeken
+ */
+
+final class Pdn {
+    final static String START = "W:W31-50:B1-20";
+
+    final static long NONE = -1l;//not a legal move
+
+    final private static String COLORS = "WB";
+    final private static HashSet<String> RESULTS = new HashSet(Arrays.asList("2-0", "0-2", "1-1", "0-0", "1-0", "0-1", "*"));
+
+    //tags and moves (notation) of one game, or a position (FEN) without moves
+    final static class Record {
+        final HashMap<String, String> tags = new HashMap();
+        final ArrayList<String> moves = new ArrayList();
+        String result = "*";
+
+        String getFen() {
+            return tags.getOrDefault("FEN", START);
+        }
+    }
+
+    final private BufferedReader reader;
+
+    private int pushback = -1;//char read once more
+    private String fen;//position that ended the last record
+
+    Pdn(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    //position of a FEN
+    static Position getPosition(String fen) {
+        String[] fields = fen.trim().replace("\"", "").replaceAll("\\.$", "").split(":");
+
+        if (fields.length == 0 || fields[0].length() != 1 || COLORS.indexOf(fields[0].charAt(0)) == -1) {
+            throw new IllegalArgumentException("fen: " + fen);
+        }
+
+        long[] pieces = new long[2];
+        long kings = 0l;
+
+        for (int i = 1; i < fields.length; i++) {
+            int color = fields[i].isEmpty() ? -1 : COLORS.indexOf(fields[i].charAt(0));
+
+            if (color == -1) {
+                throw new IllegalArgumentException("fen: " + fen);
+            }
+
+            for (String squares : fields[i].substring(1).split(",")) {
+                if (squares.isEmpty()) {
+                    continue;
+                }
+
+                boolean isKing = squares.startsWith("K");
+                String[] range = (isKing ? squares.substring(1) : squares).split("-");
+
+                try {
+                    for (int square = Integer.parseInt(range[0]); square <= Integer.parseInt(range[range.length - 1]); square++) {
+                        if (square < 1 || square > GRID * GRID / 2) {
+                            throw new IllegalArgumentException("fen: " + fen);
+                        }
+
+                        pieces[color] |= 1l << (square - 1);
+                        kings |= isKing ? 1l << (square - 1) : 0l;
+                    }
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("fen: " + fen);
+                }
+            }
+        }
+
+        if ((pieces[WHITE] & pieces[1 - WHITE]) != 0l) {
+            throw new IllegalArgumentException("fen: " + fen);
+        }
+
+        int color = COLORS.indexOf(fields[0].charAt(0));
+
+        return new Position(color, pieces[color], pieces[1 - color], kings);
+    }
+
+    //FEN of a position, squares in order (no ranges)
+    static String getFen(int color, long white, long black, long kings) {
+        StringBuilder fen = new StringBuilder().append(COLORS.charAt(color));
+
+        for (int i = 0; i < 2; i++) {
+            fen.append(':').append(COLORS.charAt(i));
+
+            for (long pieces = i == WHITE ? white : black; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+                int index = Long.numberOfTrailingZeros(pieces);
+
+                fen.append((kings & 1l << index) == 0l ? "" : "K").append(index + 1).append(Long.bitCount(pieces) > 1 ? "," : "");
+            }
+        }
+
+        return fen.toString();
+    }
+
+    static String getFen(Position position) {
+        return getFen(position.color, position.pieces[WHITE], position.pieces[1 - WHITE], position.kings);
+    }
+
+    //squares strictly between 2 squares on a diagonal, -1: not on a diagonal
+    private static long getBetween(int from, int to) {
+        int fromRow = from / COLUMN;
+        int toRow = to / COLUMN;
+        int fromColumn = 2 * (from % COLUMN) + 1 - fromRow % 2;
+        int toColumn = 2 * (to % COLUMN) + 1 - toRow % 2;
+
+        if (from == to || Math.abs(toRow - fromRow) != Math.abs(toColumn - fromColumn)) {
+            return -1l;
+        }
+
+        long between = 0l;
+
+        for (int row = fromRow + Integer.signum(toRow - fromRow), column = fromColumn + Integer.signum(toColumn - fromColumn); row != toRow; row += Integer.signum(toRow - fromRow), column += Integer.signum(toColumn - fromColumn)) {
+            between |= 1l << (row * COLUMN + column / 2);
+        }
+
+        return between;
+    }
+
+    //squares in between: captured pieces (Engine) or landing squares (PDN, all of them: 1 captured piece per step)
+    private static boolean isMatch(long move, int[] squares) {
+        long captures = getCaptures(move);
+        long captured = 0l;
+
+        for (int i = 1; i < squares.length - 1; i++) {
+            captured |= 1l << squares[i];
+        }
+
+        if ((captures & captured) == captured) {
+            return true;
+        } else if (squares.length - 1 != Long.bitCount(captures)) {
+            return false;
+        }
+
+        for (int i = 1; i < squares.length; i++) {
+            long between = getBetween(squares[i - 1], squares[i]);
+
+            if (between == -1l || Long.bitCount(between & captures) != 1) {
+                return false;
+            }
+
+            captures &= ~between;
+        }
+
+        return captures == 0l;
+    }
+
+    //legal move of the notation: from-to or from x to, landing squares (PDN) or captured pieces (Engine) in between if ambiguous, else NONE
+    static long getMove(MoveGenerator moveGenerator, Position position, String notation) {
+        String[] fields = notation.replaceAll("[!?]+$", "").split("[-x]");
+        int[] squares = new int[fields.length];
+
+        if (squares.length < 2) {
+            return NONE;
+        }
+
+        try {
+            for (int i = 0; i < squares.length; i++) {
+                squares[i] = Integer.parseInt(fields[i]) - 1;
+
+                if (squares[i] < 0 || squares[i] >= GRID * GRID / 2) {
+                    return NONE;
+                }
+            }
+        } catch (NumberFormatException ex) {
+            return NONE;
+        }
+
+        long[] moves = moveGenerator.getMoves(0);
+        int size = moveGenerator.generate(0, position.color, position.pieces[position.color], position.pieces[1 - position.color], position.kings);
+        long move = NONE;
+
+        for (int i = 0; i < size; i++) {
+            if (getFrom(moves[i]) == squares[0] && getTo(moves[i]) == squares[squares.length - 1] && (getCaptures(moves[i]) != 0l) == notation.contains("x")) {
+                if (move == NONE || (squares.length > 2 && isMatch(moves[i], squares))) {
+                    move = moves[i];
+                }
+            }
+        }
+
+        return move;
+    }
+
+    private int read() throws IOException {
+        int c = pushback == -1 ? reader.read() : pushback;
+
+        pushback = -1;
+
+        return c;
+    }
+
+    //until end (inclusive), nested: start ... end counted
+    private void skip(int start, int end) throws IOException {
+        for (int c = read(), depth = 1; c != -1; c = read()) {
+            depth += c == start ? 1 : c == end ? -1 : 0;
+
+            if (depth == 0) {
+                return;
+            }
+        }
+    }
+
+    //next game (or position), null: end of the input
+    Record next() throws IOException {
+        Record record = null;
+
+        if (fen != null) {
+            record = new Record();
+            record.tags.put("FEN", fen);
+            fen = null;
+
+            return record;
+        }
+
+        for (int c = read(); c != -1; c = read()) {
+            if (Character.isWhitespace(c)) {
+                continue;
+            } else if (c == '[') {
+                if (record != null && !record.moves.isEmpty()) {//next game
+                    pushback = c;
+
+                    return record;
+                }
+
+                StringBuilder tag = new StringBuilder();
+
+                for (c = read(); c != -1 && c != ']'; c = read()) {
+                    tag.append((char) c);
+                }
+
+                String[] nameValue = tag.toString().trim().split("\\s+", 2);
+
+                record = record == null ? new Record() : record;
+                record.tags.put(nameValue[0], nameValue.length > 1 ? nameValue[1].replace("\"", "") : "");
+            } else if (c == '{') {
+                skip('{', '}');
+            } else if (c == '(') {
+                skip('(', ')');
+            } else if (c == ';' || c == '%') {
+                skip(-1, '\n');
+            } else {
+                StringBuilder token = new StringBuilder();
+
+                for (; c != -1 && !Character.isWhitespace(c) && "[{(;".indexOf(c) == -1; c = read()) {
+                    token.append((char) c);
+                }
+
+                pushback = c;
+
+                String notation = token.toString().replaceFirst("^\\d+\\.+", "");
+
+                if (notation.isEmpty()) {
+                    continue;
+                }
+
+                record = record == null ? new Record() : record;
+
+                if (RESULTS.contains(notation)) {
+                    record.result = notation;
+
+                    return record;
+                } else if (notation.length() > 1 && COLORS.indexOf(notation.charAt(0)) != -1 && notation.charAt(1) == ':') {
+                    if (record.moves.isEmpty() && !record.tags.containsKey("FEN")) {
+                        record.tags.put("FEN", notation);
+                    } else {
+                        fen = notation;
+                    }
+
+                    return record;
+                } else {
+                    record.moves.add(notation);
+                }
+            }
+        }
+
+        return record;
+    }
+
+}
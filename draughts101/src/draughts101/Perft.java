@@ -0,0 +1,139 @@
+package draughts101;
+
+import static draughts101.Game.WB;
+import static draughts101.MoveGenerator.getBitboard;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+import static draughts101.TranspositionTable.EXACT;
+import static draughts101.TranspositionTable.NONE;
+import static draughts101.TranspositionTable.getHash;
+import static draughts101.TranspositionTable.getMoveHash;
+
+/**
+ * Perft
+ * 
+ * Counts the leaf nodes of the move tree to depth n, to check (reference positions) and time the MoveGenerator.
+ * 
+ * draughts101.Perft -> reference positions
+ * draughts101.Perft board color depth [divide] [hash] -> board (Game: 50 x w, b, W, B or _), color (w or b)
+ * 
+ * @author van Foeken
+ */
+
+final class Perft {
+    //board, color, leaf nodes depth 1, 2, ...
+    final private static String[][] POSITIONS = {
+        {"bbbbbbbbbbbbbbbbbbbb__________wwwwwwwwwwwwwwwwwwww", "w", "9 81 658 4265 27117 167140 1049442 6483961"},//start
+        {"bb_bbbb_b_bb_bbbbb__b_bbbw_____www_www_w__wwww_ww_", "b", "15 123 1018 7114 56087 379502"},//middlegame
+        {"____B______W____________W_______Bww____w____w_____", "w", "18 304 3824 60200 785453 12090311"},//kings
+        {"W___________b_b__Bb____b_____b_______b____________", "w", "7 37 215 1195 9281 58824 458073"},//king captures
+        {"b__Wbw__b________bbw_______ww__w___ww_ww__w__wwww_", "w", "6 24 396 1461 17740 58912 660146"}//captures
+    };
+    
+    final private MoveGenerator moveGenerator = new MoveGenerator();
+    final private TranspositionTable table;//null: no hash
+    
+    private Perft(TranspositionTable table) {
+        this.table = table;
+    }
+    
+    private long perft(int color, long isColor, long opponent, long kings, long hash, int depth, int ply) {
+        long entry = table == null || depth == 1 ? TranspositionTable.EMPTY : table.get(hash);
+        
+        if (entry != TranspositionTable.EMPTY && TranspositionTable.getDepth(entry) == depth) {
+            return TranspositionTable.getValue(entry) & 0xFFFFFFFFl;
+        }
+        
+        long[] moves = moveGenerator.getMoves(ply);
+        int size = moveGenerator.generate(ply, color, isColor, opponent, kings);
+        
+        if (depth == 1) {
+            return size;
+        }
+        
+        long nodes = 0l;
+        
+        for (int i = 0; i < size; i++) {
+            long move = moves[i];
+            
+            nodes += perft(1 - color, opponent ^ getCaptures(move), isColor ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, kings, move), table == null ? hash : getMoveHash(color, hash, kings, move), depth - 1, ply + 1);
+        }
+        
+        if (table != null && nodes >>> 32 == 0l) {
+            table.put(hash, depth, (int) nodes, EXACT, NONE);
+        }
+        
+        return nodes;
+    }
+    
+    //nodes per move (divide) and total
+    private long perft(char[] board, int color, int depth, boolean divide) {
+        long isColor = getBitboard(board, color);
+        long opponent = getBitboard(board, 1 - color);
+        long kings = getKings(board);
+        
+        long hash = getHash(color, isColor, opponent, kings);
+        
+        if (!divide || depth == 0) {
+            return depth == 0 ? 1l : perft(color, isColor, opponent, kings, hash, depth, 0);
+        }
+        
+        long[] moves = moveGenerator.getMoves(0);
+        int size = moveGenerator.generate(0, color, isColor, opponent, kings);
+        long nodes = 0l;
+        
+        for (int i = 0; i < size; i++) {
+            long move = moves[i];
+            long nodesMove = depth == 1 ? 1l : perft(1 - color, opponent ^ getCaptures(move), isColor ^ (1l << getFrom(move) ^ 1l << getTo(move)), getKings(color, kings, move), getMoveHash(color, hash, kings, move), depth - 1, 1);
+            
+            System.out.println(MoveGenerator.toString(move) + ": " + nodesMove);
+            
+            nodes += nodesMove;
+        }
+        
+        return nodes;
+    }
+    
+    public static void main(String[] args) {
+        if (args.length >= 3) {
+            boolean divide = false;
+            boolean hash = false;
+            
+            for (int i = 3; i < args.length; i++) {
+                divide |= args[i].equals("divide");
+                hash |= args[i].equals("hash");
+            }
+            
+            long start = System.nanoTime();
+            long nodes = new Perft(hash ? new TranspositionTable.Heap(1 << 22) : null).perft(args[0].toCharArray(), WB.indexOf(args[1]), Integer.parseInt(args[2]), divide);
+            long time = System.nanoTime() - start;
+            
+            System.out.println("nodes: " + nodes + ", " + time / 1000000 + " ms, " + nodes * 1000000000l / Math.max(1l, time) + " nodes/s");
+        } else {
+            boolean ok = true;
+            
+            for (String[] position : POSITIONS) {
+                String[] expected = position[2].split(" ");
+                
+                System.out.println(position[0] + " " + position[1]);
+                
+                for (int depth = 1; depth <= expected.length; depth++) {
+                    long start = System.nanoTime();
+                    long nodes = new Perft(null).perft(position[0].toCharArray(), WB.indexOf(position[1]), depth, false);
+                    long time = System.nanoTime() - start;
+                    long nodesHash = new Perft(new TranspositionTable.Heap(1 << 20)).perft(position[0].toCharArray(), WB.indexOf(position[1]), depth, false);
+                    boolean isExpected = nodes == Long.parseLong(expected[depth - 1]) && nodesHash == nodes;
+                    
+                    System.out.println(depth + ": " + nodes + (nodesHash == nodes ? "" : " (hash " + nodesHash + ")") + ", " + time / 1000000 + " ms, " + nodes * 1000000000l / Math.max(1l, time) + " nodes/s " + (isExpected ? "ok" : "expected " + expected[depth - 1]));
+                    
+                    ok &= isExpected;
+                }
+            }
+            
+            System.exit(ok ? 0 : 1);
+        }
+    }
+    
+}
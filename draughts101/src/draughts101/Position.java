@@ -0,0 +1,98 @@
+package draughts101;
+
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+import static draughts101.TranspositionTable.getHash;
+import static draughts101.TranspositionTable.getMoveHash;
+import java.util.Arrays;
+
+/**
+ * Position
+ *
+ * Color to move, pieces (white, black), kings, hash and piece-square value (Evaluation), changed in place by make and undone by unmake.
+ * Undo: move, kings, hash and value per ply in preallocated arrays (grown when a game gets longer), no allocation in a search.
+ *
+ * @author van Foeken
+ */
+
+final class Position {
+    final static String START = "bbbbbbbbbbbbbbbbbbbb__________wwwwwwwwwwwwwwwwwwww";
+
+    int color;
+    final long[] pieces = new long[2];
+    long kings;
+    long hash;
+    int value;//piece-square value: white - black
+
+    final private Evaluation evaluation;
+
+    private long[] moves = new long[MoveGenerator.MAX_PLY];
+    private long[] kingsUndo = new long[MoveGenerator.MAX_PLY];
+    private long[] hashUndo = new long[MoveGenerator.MAX_PLY];
+    private int[] valueUndo = new int[MoveGenerator.MAX_PLY];
+    private int ply;
+
+    Position() {
+        this(Evaluation.DEFAULT);
+    }
+
+    Position(Evaluation evaluation) {
+        this.evaluation = evaluation;
+
+        set(WHITE, MoveGenerator.getBitboard(START.toCharArray(), WHITE), MoveGenerator.getBitboard(START.toCharArray(), 1 - WHITE), 0l);
+    }
+
+    Position(int color, long isColor, long opponent, long kings) {
+        evaluation = Evaluation.DEFAULT;
+
+        set(color, isColor, opponent, kings);
+    }
+
+    //new position, nothing to undo
+    void set(int color, long isColor, long opponent, long kings) {
+        this.color = color;
+        pieces[color] = isColor;
+        pieces[1 - color] = opponent;
+        this.kings = kings;
+
+        hash = getHash(color, isColor, opponent, kings);
+        value = evaluation.getValue(WHITE, pieces[WHITE], kings) - evaluation.getValue(1 - WHITE, pieces[1 - WHITE], kings);
+        ply = 0;
+    }
+
+    void make(long move) {
+        if (ply == moves.length) {
+            moves = Arrays.copyOf(moves, ply * 2);
+            kingsUndo = Arrays.copyOf(kingsUndo, ply * 2);
+            hashUndo = Arrays.copyOf(hashUndo, ply * 2);
+            valueUndo = Arrays.copyOf(valueUndo, ply * 2);
+        }
+
+        moves[ply] = move;
+        kingsUndo[ply] = kings;
+        hashUndo[ply] = hash;
+        valueUndo[ply++] = value;
+
+        hash = getMoveHash(color, hash, kings, move);
+        value += color == WHITE ? evaluation.getMoveValue(color, kings, move) : -evaluation.getMoveValue(color, kings, move);
+        pieces[color] ^= 1l << getFrom(move) ^ 1l << getTo(move);
+        pieces[1 - color] ^= getCaptures(move);
+        kings = getKings(color, kings, move);
+        color = 1 - color;
+    }
+
+    void unmake() {
+        long move = moves[--ply];
+
+        color = 1 - color;
+        pieces[color] ^= 1l << getFrom(move) ^ 1l << getTo(move);
+        pieces[1 - color] ^= getCaptures(move);
+        kings = kingsUndo[ply];
+        hash = hashUndo[ply];
+        value = valueUndo[ply];
+    }
+
+}
@@ -0,0 +1,69 @@
+package draughts101;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Search
+ *
+ * Settings of one AI (level, time, nodes, threads, lazy smp, pvs, aspiration window, evaluation weights) and the tables it uses.
+ * Game and Engine share the default tables (TranspositionTable of 16 MB, -Ddraughts101.table=MB, -Ddraughts101.direct=true: outside the heap) and the Cache (opt-in: -Ddraughts101.cache=true, opened by the first search); a Tournament gives each AI its own transposition table, so games can run at the same time.
+ *
+ * @author van Foeken
+ */
+
+final class Search {
+    final static TranspositionTable TABLE = TranspositionTable.getTable(Long.getLong("draughts101.table", 16l), Boolean.getBoolean("draughts101.direct"));//MB, direct: outside the heap
+    final static Tablebase TABLEBASE = new Tablebase(Tablebase.DIRECTORY);//exact values of endgames (memory-mapped)
+    final static Book BOOK = new Book(Book.FILE);//opening moves (memory-mapped)
+
+    final private static boolean CACHED = Boolean.getBoolean("draughts101.cache");//default searches use the Cache
+    private static Cache shared;//default Cache
+
+    //persistent analysis (memory-mapped)
+    static synchronized Cache getCache() {
+        if (shared == null) {
+            shared = new Cache(Cache.FILE, Cache.SIZE);
+        }
+
+        return shared;
+    }
+
+    final static int MAX_LEVEL = MoveGenerator.MAX_PLY / 2 - 1;//levels of a search: its plies fit MAX_PLY and the depth (8 bits) of the table
+
+    int level = 5;//1 level = 2 moves
+    long time = Long.MAX_VALUE;//ms
+    long nodes = Long.MAX_VALUE;
+    int threads = 1;
+    boolean smp = false;
+    boolean pvs = true;//principal variation search: null window after the first move
+    int aspiration = 25;//window around the value of the previous iteration, 0: full window
+    Evaluation evaluation = Evaluation.DEFAULT;
+
+    final TranspositionTable table;
+    final Cache cache;//null: none
+    final Tablebase tablebase;//null: none
+    final Book book;//null: none
+
+    private ForkJoinPool pool;//threads > 1, kept for the next search
+
+    Search() {
+        this(TABLE, CACHED ? getCache() : null, TABLEBASE, BOOK);
+    }
+
+    Search(TranspositionTable table, Cache cache, Tablebase tablebase, Book book) {
+        this.table = table;
+        this.cache = cache;
+        this.tablebase = tablebase;
+        this.book = book;
+    }
+
+    //pool of threads workers, new if threads changed (the old one isn't shut down: a cancelled search may still use it, idle workers end)
+    synchronized ForkJoinPool getPool() {
+        if (pool == null || pool.getParallelism() != threads) {
+            pool = new ForkJoinPool(threads);
+        }
+
+        return pool;
+    }
+
+}
@@ -0,0 +1,227 @@
+package draughts101;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Statistics
+ *
+ * Counters of a search (MinMax.getBestMoves): nodes, quiescence nodes, TranspositionTable probes, hits and stores, cutoffs (first move), pvs and aspiration re-searches, max ply, time and nodes per depth.
+ * Counted per thread in MinMax (plain ints, ENABLED = false compiles them out), added to the atomics after each root move.
+ * TOTAL (all searches) and LAST (last search) are JMX MBeans draughts101:type=Statistics,name=total/last (register), switched off by -Ddraughts101.statistics=false.
+ *
+ * @author van Foeken
+ */
+
+final class Statistics implements StatisticsMBean {
+    final static boolean ENABLED = true;//false: table and cutoff counters compiled out of MinMax
+    final static boolean MONITORED = Boolean.parseBoolean(System.getProperty("draughts101.statistics", "true"));//TOTAL and LAST
+
+    final static Statistics TOTAL = new Statistics();
+    final static Statistics LAST = new Statistics();
+
+    //MBean server (platform), once
+    static synchronized void register() {
+        if (!MONITORED) {
+            return;
+        }
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            for (String name : new String[] {"total", "last"}) {
+                ObjectName objectName = new ObjectName("draughts101:type=Statistics,name=" + name);
+
+                if (!server.isRegistered(objectName)) {
+                    server.registerMBean(name.equals("total") ? TOTAL : LAST, objectName);
+                }
+            }
+        } catch (JMException ex) {}
+    }
+
+    final AtomicLong searches = new AtomicLong();
+    final AtomicLong nodes = new AtomicLong();
+    final AtomicLong quiescenceNodes = new AtomicLong();
+    final AtomicLong probes = new AtomicLong();
+    final AtomicLong hits = new AtomicLong();
+    final AtomicLong stores = new AtomicLong();
+    final AtomicLong cutoffs = new AtomicLong();
+    final AtomicLong firstMoveCutoffs = new AtomicLong();
+    final AtomicLong reSearches = new AtomicLong();
+    final AtomicLong aspirationReSearches = new AtomicLong();
+    final AtomicLong iterations = new AtomicLong();//completed depths
+    final AtomicInteger maxPly = new AtomicInteger();
+    final private AtomicLong time = new AtomicLong();//ns
+
+    final private long start = System.nanoTime();
+
+    //per completed depth (last search): nodes and time (ns) so far
+    private long[] iterationNodes = new long[0];
+    private long[] iterationTimes = new long[0];
+
+    //depth completed
+    synchronized void iteration() {
+        iterations.incrementAndGet();
+
+        iterationNodes = Arrays.copyOf(iterationNodes, iterationNodes.length + 1);
+        iterationTimes = Arrays.copyOf(iterationTimes, iterationTimes.length + 1);
+
+        iterationNodes[iterationNodes.length - 1] = nodes.get();
+        iterationTimes[iterationTimes.length - 1] = System.nanoTime() - start;
+    }
+
+    //search done: time, added to TOTAL and LAST
+    void stop() {
+        searches.set(1l);//not running
+        time.set(System.nanoTime() - start);
+
+        if (MONITORED) {
+            TOTAL.add(this);
+
+            synchronized (LAST) {
+                LAST.reset();
+                LAST.add(this);
+            }
+        }
+    }
+
+    //counters of statistics added, depths of statistics (last search)
+    void add(Statistics statistics) {
+        searches.addAndGet(statistics.searches.get());
+        nodes.addAndGet(statistics.nodes.get());
+        quiescenceNodes.addAndGet(statistics.quiescenceNodes.get());
+        probes.addAndGet(statistics.probes.get());
+        hits.addAndGet(statistics.hits.get());
+        stores.addAndGet(statistics.stores.get());
+        cutoffs.addAndGet(statistics.cutoffs.get());
+        firstMoveCutoffs.addAndGet(statistics.firstMoveCutoffs.get());
+        reSearches.addAndGet(statistics.reSearches.get());
+        aspirationReSearches.addAndGet(statistics.aspirationReSearches.get());
+        iterations.addAndGet(statistics.iterations.get());
+        maxPly.accumulateAndGet(statistics.maxPly.get(), Math::max);
+        time.addAndGet(statistics.time.get());
+
+        synchronized (statistics) {
+            long[] nodes = statistics.iterationNodes;
+            long[] times = statistics.iterationTimes;
+
+            synchronized (this) {
+                iterationNodes = nodes;
+                iterationTimes = times;
+            }
+        }
+    }
+
+    @Override
+    public synchronized void reset() {
+        for (AtomicLong counter : new AtomicLong[] {searches, nodes, quiescenceNodes, probes, hits, stores, cutoffs, firstMoveCutoffs, reSearches, aspirationReSearches, iterations, time}) {
+            counter.set(0l);
+        }
+
+        maxPly.set(0);
+        iterationNodes = new long[0];
+        iterationTimes = new long[0];
+    }
+
+    @Override
+    public long getSearches() {
+        return searches.get();
+    }
+
+    @Override
+    public long getNodes() {
+        return nodes.get();
+    }
+
+    @Override
+    public long getQuiescenceNodes() {
+        return quiescenceNodes.get();
+    }
+
+    //running search: time so far
+    @Override
+    public long getNodesPerSecond() {
+        return (long) (nodes.get() * 1e9 / Math.max(1l, searches.get() == 0l ? System.nanoTime() - start : time.get()));
+    }
+
+    @Override
+    public long getProbes() {
+        return probes.get();
+    }
+
+    @Override
+    public long getHits() {
+        return hits.get();
+    }
+
+    @Override
+    public double getHitRate() {
+        return (double) hits.get() / Math.max(1l, probes.get());
+    }
+
+    @Override
+    public long getStores() {
+        return stores.get();
+    }
+
+    @Override
+    public long getCutoffs() {
+        return cutoffs.get();
+    }
+
+    @Override
+    public double getFirstMoveCutoffRate() {
+        return (double) firstMoveCutoffs.get() / Math.max(1l, cutoffs.get());
+    }
+
+    @Override
+    public long getReSearches() {
+        return reSearches.get();
+    }
+
+    @Override
+    public long getAspirationReSearches() {
+        return aspirationReSearches.get();
+    }
+
+    //plies from the root, quiescence included
+    @Override
+    public int getMaxDepth() {
+        return maxPly.get();
+    }
+
+    //per ply: nodes of the last depth / nodes of the depth before (1 depth = 2 plies), 0 before 3 depths
+    @Override
+    public synchronized double getBranchingFactor() {
+        int depth = iterationNodes.length - 1;
+
+        if (depth < 2 || iterationNodes[depth - 1] == iterationNodes[depth - 2]) {
+            return 0.0;
+        }
+
+        return Math.sqrt((double) (iterationNodes[depth] - iterationNodes[depth - 1]) / (iterationNodes[depth - 1] - iterationNodes[depth - 2]));
+    }
+
+    @Override
+    public long getTime() {
+        return (searches.get() == 0l ? System.nanoTime() - start : time.get()) / 1000000l;
+    }
+
+    //per depth (last search), ms
+    @Override
+    public synchronized long[] getIterationTimes() {
+        long[] times = new long[iterationTimes.length];
+
+        for (int i = 0; i < times.length; i++) {
+            times[i] = (iterationTimes[i] - (i == 0 ? 0l : iterationTimes[i - 1])) / 1000000l;
+        }
+
+        return times;
+    }
+
+}
@@ -0,0 +1,29 @@
+package draughts101;
+
+/**
+ * StatisticsMBean
+ *
+ * JMX view of Statistics (public: required by the MBean server), times in ms.
+ *
+ * @author van Foeken
+ */
+
+public interface StatisticsMBean {
+    long getSearches();
+    long getNodes();
+    long getQuiescenceNodes();
+    long getNodesPerSecond();
+    long getProbes();
+    long getHits();
+    double getHitRate();
+    long getStores();
+    long getCutoffs();
+    double getFirstMoveCutoffRate();
+    long getReSearches();
+    long getAspirationReSearches();
+    int getMaxDepth();
+    double getBranchingFactor();
+    long getTime();
+    long[] getIterationTimes();
+    void reset();
+}
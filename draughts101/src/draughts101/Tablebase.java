@@ -0,0 +1,405 @@
+package draughts101;
+
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.COLUMN;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Tablebase
+ *
+ * Endgame databases (win, draw or loss and distance in plies) of positions with few pieces, generated offline by retrograde analysis.
+ *
+ * One file per material (men and kings of the color to move, men and kings of the opponent): header + 1 byte per position.
+ * Black to move is looked up as white to move on the rotated board, so there are only tables for white to move.
+ * Files are memory-mapped: probing doesn't use the heap. Sizes and indices are long (6 pieces: up to 2.5 * 10^9 positions), tables are kept in chunks of 1 GB.
+ *
+ * draughts101.Tablebase [pieces] [directory] -> generates the missing tables up to pieces (max 6)
+ *
+ * @author van Foeken
+ */
+
+final class Tablebase {
+    final static int MAX_PIECES = 6;
+
+    final static int WIN = 1 << 20;//win in n plies: WIN - n
+    final static int UNKNOWN = Integer.MIN_VALUE;
+
+    final static File DIRECTORY = new File("tablebase");
+
+    final private static int MAGIC = 0x44313031;//D101
+    final private static int HEADER = 12;//magic, material (4 bytes), max distance
+
+    final private static int SQUARES = COLUMN * COLUMN * 2;
+    final private static int MEN = SQUARES - COLUMN;//a man is never on the promotion row
+
+    final private static int DRAW = 0;//value (byte): 0 draw, distance + 1 (odd: loss, even: win)
+    final private static int LOSS = 1;//no moves
+    final private static int MAX_DISTANCE = 254;
+
+    final private static int CHUNK = 30;//1 GB per ByteBuffer
+
+    final private static int[][] BINOMIAL = new int[SQUARES + 1][MAX_PIECES + 1];
+
+    static {
+        for (int n = 0; n <= SQUARES; n++) {
+            BINOMIAL[n][0] = 1;
+
+            for (int k = 1; k <= Math.min(n, MAX_PIECES); k++) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + BINOMIAL[n - 1][k];
+            }
+        }
+    }
+
+    //men, kings of the color to move, men, kings of the opponent
+    private static int getMaterial(int men, int kings, int opponentMen, int opponentKings) {
+        return ((men * (MAX_PIECES + 1) + kings) * (MAX_PIECES + 1) + opponentMen) * (MAX_PIECES + 1) + opponentKings;
+    }
+
+    private static int getMaterial(long isColor, long opponent, long kings) {
+        return getMaterial(Long.bitCount(isColor & ~kings), Long.bitCount(isColor & kings), Long.bitCount(opponent & ~kings), Long.bitCount(opponent & kings));
+    }
+
+    private static int getPieces(int material, int piece) {//piece: 0-3 (men, kings, opponent men, opponent kings)
+        for (int i = piece; i < 3; i++) {
+            material /= MAX_PIECES + 1;
+        }
+
+        return material % (MAX_PIECES + 1);
+    }
+
+    private static long getSize(int material) {
+        return (long) BINOMIAL[MEN][getPieces(material, 0)] * BINOMIAL[SQUARES][getPieces(material, 1)] * BINOMIAL[MEN][getPieces(material, 2)] * BINOMIAL[SQUARES][getPieces(material, 3)];
+    }
+
+    private static String getName(int material) {
+        return "" + getPieces(material, 0) + getPieces(material, 1) + getPieces(material, 2) + getPieces(material, 3) + ".db";
+    }
+
+    //index 49 - index: black becomes white
+    private static long rotate(long bitboard) {
+        return Long.reverse(bitboard) >>> Long.SIZE - SQUARES;
+    }
+
+    //combinatorial number of a set of squares
+    private static int getIndex(long bitboard) {
+        int index = 0;
+
+        for (int k = 1; bitboard != 0l; bitboard ^= Long.lowestOneBit(bitboard)) {
+            index += BINOMIAL[Long.numberOfTrailingZeros(bitboard)][k++];
+        }
+
+        return index;
+    }
+
+    private static long getBitboard(int index, int k) {
+        long bitboard = 0l;
+
+        for (int square = SQUARES - 1; k > 0; k--) {
+            while (BINOMIAL[square][k] > index) {
+                square--;
+            }
+
+            index -= BINOMIAL[square][k];
+            bitboard ^= 1l << square;
+        }
+
+        return bitboard;
+    }
+
+    //white to move: men (not on row 0), kings, opponent men (not on row 9), opponent kings
+    private static long getIndex(int material, long isColor, long opponent, long kings) {
+        long index = getIndex((isColor & ~kings) >>> COLUMN);
+
+        index = index * BINOMIAL[SQUARES][getPieces(material, 1)] + getIndex(isColor & kings);
+        index = index * BINOMIAL[MEN][getPieces(material, 2)] + getIndex(opponent & ~kings);
+
+        return index * BINOMIAL[SQUARES][getPieces(material, 3)] + getIndex(opponent & kings);
+    }
+
+    //header + 1 byte per position in chunks (a ByteBuffer and map are at most 2 GB)
+    final private static class Table {
+        final private ByteBuffer[] chunks;
+
+        private Table(ByteBuffer[] chunks) {
+            this.chunks = chunks;
+        }
+
+        //new table of size positions (heap)
+        private Table(long size) {
+            chunks = new ByteBuffer[(int) ((HEADER + size - 1 >>> CHUNK) + 1)];
+
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = ByteBuffer.wrap(new byte[(int) Math.min(1l << CHUNK, HEADER + size - ((long) i << CHUNK))]);
+            }
+        }
+
+        private static Table map(FileChannel channel, long length) throws IOException {
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((length - 1 >>> CHUNK) + 1)];
+
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, (long) i << CHUNK, Math.min(1l << CHUNK, length - ((long) i << CHUNK)));
+            }
+
+            return new Table(chunks);
+        }
+
+        private int get(long index) {
+            index += HEADER;
+
+            return chunks[(int) (index >>> CHUNK)].get((int) index & (1 << CHUNK) - 1) & 0xFF;
+        }
+
+        private void put(long index, int value) {
+            index += HEADER;
+            chunks[(int) (index >>> CHUNK)].put((int) index & (1 << CHUNK) - 1, (byte) value);
+        }
+
+        private ByteBuffer getHeader() {
+            return chunks[0];
+        }
+
+        private void write(File file) throws IOException {
+            try (FileOutputStream output = new FileOutputStream(file)) {
+                for (ByteBuffer chunk : chunks) {
+                    output.write(chunk.array());
+                }
+            }
+        }
+    }
+
+    final private Table[] tables = new Table[getMaterial(MAX_PIECES, MAX_PIECES, MAX_PIECES, MAX_PIECES) + 1];
+
+    private int pieces = 0;//max pieces of the tables
+
+    //tables in directory, none if there aren't any
+    Tablebase(File directory) {
+        File[] files = directory.listFiles((file, name) -> name.matches("[0-" + MAX_PIECES + "]{4}\\.db"));
+
+        for (int i = 0; files != null && i < files.length; i++) {
+            try {
+                load(files[i]);
+            } catch (IOException ex) {}
+        }
+    }
+
+    private void load(File file) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            long length = randomAccessFile.length();
+
+            if (length < HEADER) {
+                return;
+            }
+
+            Table table = Table.map(randomAccessFile.getChannel(), length);
+            ByteBuffer header = table.getHeader();
+            int material = getMaterial(header.get(4), header.get(5), header.get(6), header.get(7));
+
+            if (material != 0 && header.getInt(0) == MAGIC && length == HEADER + getSize(material)) {
+                put(material, table);
+            }
+        }
+    }
+
+    private void put(int material, Table table) {
+        tables[material] = table;
+        pieces = Math.max(pieces, getPieces(material, 0) + getPieces(material, 1) + getPieces(material, 2) + getPieces(material, 3));
+    }
+
+    int getPieces() {
+        return pieces;
+    }
+
+    //value (byte) of white to move, LOSS if white has no pieces, -1 no table
+    private int get(long isColor, long opponent, long kings) {
+        if (isColor == 0l) {
+            return LOSS;
+        }
+
+        int material = getMaterial(isColor, opponent, kings);
+        Table table = tables[material];
+
+        return table == null ? -1 : table.get(getIndex(material, isColor, opponent, kings));
+    }
+
+    //value for color to move: WIN - n (win in n plies), 0 (draw), -WIN + n (loss in n plies) or UNKNOWN
+    int getValue(int color, long isColor, long opponent, long kings) {
+        if (Long.bitCount(isColor ^ opponent) > pieces) {
+            return UNKNOWN;
+        }
+
+        int value = color == WHITE ? get(isColor, opponent, kings) : get(rotate(isColor), rotate(opponent), rotate(kings));
+
+        return value == -1 ? UNKNOWN : value == DRAW ? 0 : value % 2 == LOSS ? -WIN + value - 1 : WIN - value + 1;
+    }
+
+    //one pass over part of a table: positions of distance (0: no moves), returns the number found
+    private int generate(MoveGenerator moveGenerator, int material, Table values, long from, long to, int distance) {
+        int men = getPieces(material, 0);
+        int kings = getPieces(material, 1);
+        int opponentMen = getPieces(material, 2);
+        int opponentKings = getPieces(material, 3);
+
+        int found = 0;
+
+        for (long index = from; index < to; index++) {
+            if (values.get(index) != DRAW) {
+                continue;
+            }
+
+            long isColorIndex = index / BINOMIAL[SQUARES][opponentKings] / BINOMIAL[MEN][opponentMen];
+
+            long isColorMen = getBitboard((int) (isColorIndex / BINOMIAL[SQUARES][kings]), men) << COLUMN;
+            long isColorKings = getBitboard((int) (isColorIndex % BINOMIAL[SQUARES][kings]), kings);
+            long opponentMenBitboard = getBitboard((int) (index / BINOMIAL[SQUARES][opponentKings] % BINOMIAL[MEN][opponentMen]), opponentMen);
+            long opponentKingsBitboard = getBitboard((int) (index % BINOMIAL[SQUARES][opponentKings]), opponentKings);
+
+            long isColor = isColorMen | isColorKings;
+            long opponent = opponentMenBitboard | opponentKingsBitboard;
+
+            if (Long.bitCount(isColor) != men + kings || Long.bitCount(opponent) != opponentMen + opponentKings || (isColor & opponent) != 0l) {
+                continue;//not a position
+            }
+
+            long kingsBitboard = isColorKings | opponentKingsBitboard;
+
+            long[] moves = moveGenerator.getMoves(0);
+            int size = moveGenerator.generate(0, WHITE, isColor, opponent, kingsBitboard);
+
+            boolean isLoss = distance % 2 == 0;//loss: all moves lead to a win, win: a move leads to a loss
+            boolean isDistance = distance == 0 ? size == 0 : size > 0 && isLoss;
+
+            for (int i = 0; i < size && distance > 0 && isDistance == isLoss; i++) {
+                long move = moves[i];
+                int value = get(rotate(opponent ^ getCaptures(move)), rotate(isColor ^ (1l << getFrom(move) ^ 1l << getTo(move))), rotate(getKings(WHITE, kingsBitboard, move)));
+
+                isDistance = value > DRAW && value <= distance && value % 2 == (isLoss ? 0 : LOSS);
+            }
+
+            if (isDistance) {
+                values.put(index, distance + 1);
+                found++;
+            }
+        }
+
+        return found;
+    }
+
+    //material and its mirror (opponent to move) together: moves without capture or promotion go from one to the other
+    private void generate(ForkJoinPool pool, File directory, int... materials) throws IOException, InterruptedException, ExecutionException {
+        Table[] values = new Table[materials.length];
+        int maxDistance = 0;
+
+        for (int i = 0; i < materials.length; i++) {
+            values[i] = new Table(getSize(materials[i]));
+
+            values[i].getHeader().putInt(0, MAGIC).put(4, (byte) getPieces(materials[i], 0)).put(5, (byte) getPieces(materials[i], 1)).put(6, (byte) getPieces(materials[i], 2)).put(7, (byte) getPieces(materials[i], 3));
+            put(materials[i], values[i]);
+        }
+
+        for (Table table : tables) {
+            if (table != null) {
+                maxDistance = Math.max(maxDistance, table.getHeader().getInt(8));
+            }
+        }
+
+        ThreadLocal<MoveGenerator> moveGenerator = ThreadLocal.withInitial(MoveGenerator::new);
+
+        long found = 1l;
+
+        for (int distance = 0; found > 0l || distance <= maxDistance + 1; distance++) {
+            if (distance > MAX_DISTANCE) {
+                throw new IllegalStateException(getName(materials[0]) + ": distance > " + MAX_DISTANCE);
+            }
+
+            ArrayList<Callable<Integer>> tasks = new ArrayList();
+            int pass = distance;
+
+            for (int i = 0; i < materials.length; i++) {
+                int material = materials[i];
+                Table table = values[i];
+                long size = getSize(material);
+                long chunk = Math.max(1 << 12, size / (pool.getParallelism() * 16));
+
+                for (long from = 0; from < size; from += chunk) {
+                    long start = from;
+
+                    tasks.add(() -> generate(moveGenerator.get(), material, table, start, Math.min(size, start + chunk), pass));
+                }
+            }
+
+            found = 0l;
+
+            for (Future<Integer> future : pool.invokeAll(tasks)) {
+                found += future.get();
+            }
+
+            if (found > 0l) {
+                for (Table table : values) {
+                    table.getHeader().putInt(8, distance);
+                }
+            }
+        }
+
+        for (int i = 0; i < materials.length; i++) {
+            File file = new File(directory, getName(materials[i]));
+
+            values[i].write(file);
+            load(file);
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException, ExecutionException {
+        int pieces = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        File directory = args.length > 1 ? new File(args[1]) : DIRECTORY;
+
+        if (pieces < 2 || pieces > MAX_PIECES) {
+            throw new IllegalArgumentException("pieces: 2-" + MAX_PIECES);
+        }
+
+        directory.mkdirs();
+
+        Tablebase tablebase = new Tablebase(directory);
+        ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        //captures lead to less pieces, promotions to less men
+        for (int n = 2; n <= pieces; n++) {
+            for (int men = 0; men <= n; men++) {
+                for (int white = 1; white < n; white++) {
+                    for (int whiteMen = Math.max(0, men - (n - white)); whiteMen <= Math.min(men, white); whiteMen++) {
+                        int material = getMaterial(whiteMen, white - whiteMen, men - whiteMen, n - white - (men - whiteMen));
+                        int mirror = getMaterial(men - whiteMen, n - white - (men - whiteMen), whiteMen, white - whiteMen);
+
+                        if (material <= mirror && (tablebase.tables[material] == null || tablebase.tables[mirror] == null)) {
+                            long start = System.currentTimeMillis();
+
+                            if (material == mirror) {
+                                tablebase.generate(pool, directory, material);
+                            } else {
+                                tablebase.generate(pool, directory, material, mirror);
+                            }
+
+                            System.out.println(getName(material) + (material == mirror ? "" : " " + getName(mirror)) + ": " + (System.currentTimeMillis() - start) + " ms");
+                        }
+                    }
+                }
+            }
+        }
+
+        pool.shutdown();
+    }
+
+}
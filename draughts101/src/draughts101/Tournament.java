@@ -0,0 +1,312 @@
+package draughts101;
+
+import static draughts101.Board.BLACK;
+import static draughts101.Board.WHITE;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tournament
+ *
+ * Self-play of 2 AI settings (A and B), games in parallel, each AI with its own transposition table (no Board, no Game).
+ * Openings: all positions after plies from the start, each played twice (A white, A black).
+ * Draw: 25 moves each of kings only (no capture, no man moved) or MAX_PLIES.
+ *
+ * draughts101.Tournament [games] [A] [B] [parallel games] [opening plies]
+ * A, B: level=3,time=100,nodes=100000,table=16 (MB),direct=false (table outside the heap),tablebase=true,book=false,threads=1,pvs=true,aspiration=25,man=100,king=300,... (Evaluation.Weight)
+ * -> wins, draws, losses (A), Elo difference (95%), SPRT (H0: elo 0, H1: elo 10, alfa = beta = 0.05, stops when accepted), nodes/s
+ *
+ * @author van Foeken
+ */
+
+final class Tournament {
+    final private static int MAX_PLIES = 400;
+    final private static int KINGS_ONLY = 50;//plies
+
+    final private static double ELO0 = 0.0;
+    final private static double ELO1 = 10.0;
+    final private static double ALFA = 0.05;
+    final private static double BETA = 0.05;
+
+    //settings of an AI and its nodes and time
+    final private static class Player {
+        final private String name;
+
+        private int level = 3;
+        private long time = Long.MAX_VALUE;
+        private long nodes = Long.MAX_VALUE;
+        private int table = 16;//MB
+        private boolean direct = false;
+        private boolean tablebase = true;
+        private boolean book = false;
+        private int threads = 1;
+        private boolean pvs = true;
+        private int aspiration = 25;
+        final private int[] weights = Evaluation.getWeights();
+        final private Evaluation evaluation;
+
+        final private Statistics statistics = new Statistics();//all searches
+
+        Player(String name, String settings) {
+            this.name = name;
+
+            for (String setting : settings.split(",")) {
+                String[] keyValue = setting.split("=");
+
+                if (keyValue.length != 2) {
+                    continue;
+                }
+
+                switch (keyValue[0]) {
+                    case "level":
+                        level = Math.max(1, Math.min(Search.MAX_LEVEL, Integer.parseInt(keyValue[1])));
+                        break;
+                    case "time":
+                        time = Long.parseLong(keyValue[1]);
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(keyValue[1]);
+                        break;
+                    case "table":
+                        table = Integer.parseInt(keyValue[1]);
+                        break;
+                    case "direct":
+                        direct = Boolean.parseBoolean(keyValue[1]);
+                        break;
+                    case "tablebase":
+                        tablebase = Boolean.parseBoolean(keyValue[1]);
+                        break;
+                    case "book":
+                        book = Boolean.parseBoolean(keyValue[1]);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(keyValue[1]);
+                        break;
+                    case "pvs":
+                        pvs = Boolean.parseBoolean(keyValue[1]);
+                        break;
+                    case "aspiration":
+                        aspiration = Integer.parseInt(keyValue[1]);
+                        break;
+                    default:
+                        try {
+                            weights[Evaluation.Weight.valueOf(keyValue[0].toUpperCase()).ordinal()] = Integer.parseInt(keyValue[1]);
+                        } catch (IllegalArgumentException ex) {
+                            throw new IllegalArgumentException(name + ": " + setting);
+                        }
+                }
+            }
+
+            evaluation = new Evaluation(weights);
+        }
+
+        //own transposition table (and pool), 1 per thread
+        Search getSearch() {
+            Search search = new Search(TranspositionTable.getTable(table, direct), null, tablebase ? Search.TABLEBASE : null, book ? Search.BOOK : null);
+
+            search.level = level;
+            search.time = time;
+            search.nodes = nodes;
+            search.threads = threads;
+            search.pvs = pvs;
+            search.aspiration = aspiration;
+            search.evaluation = evaluation;
+
+            return search;
+        }
+
+        @Override
+        public String toString() {
+            return name + " (level " + level + (time == Long.MAX_VALUE ? "" : ", " + time + " ms") + (nodes == Long.MAX_VALUE ? "" : ", " + nodes + " nodes") + ", table " + table + " MB" + (direct ? " (direct)" : "") + (tablebase ? ", tablebase" : "") + (book ? ", book" : "") + ", " + threads + " thread(s)" + (pvs ? ", pvs" : "") + (aspiration > 0 ? ", aspiration " + aspiration : "") + ", " + Arrays.toString(weights) + ")";
+        }
+    }
+
+    final private Player[] players;//A, B
+    final private ArrayList<long[]> openings = new ArrayList();//color, white, black, kings
+
+    final private AtomicInteger wins = new AtomicInteger();
+    final private AtomicInteger draws = new AtomicInteger();
+    final private AtomicInteger losses = new AtomicInteger();
+
+    final private AtomicBoolean isDecided = new AtomicBoolean();
+
+    //per thread: search (transposition table, pool) of A and B
+    final private ThreadLocal<Search[]> searches;
+
+    private Tournament(Player a, Player b, int plies) {
+        players = new Player[] {a, b};
+        searches = ThreadLocal.withInitial(() -> new Search[] {a.getSearch(), b.getSearch()});
+
+        MoveGenerator moveGenerator = new MoveGenerator();
+        HashSet<Long> positions = new HashSet();
+
+        Position position = new Position();
+
+        openings.add(new long[] {position.color, position.pieces[WHITE], position.pieces[BLACK], position.kings});
+
+        for (int i = 0; i < plies; i++) {
+            ArrayList<long[]> next = new ArrayList();
+
+            for (long[] opening : openings) {
+                int color = (int) opening[0];
+                long[] moves = moveGenerator.getMoves(0);
+                int size = moveGenerator.generate(0, color, opening[1 + color], opening[2 - color], opening[3]);
+
+                position.set(color, opening[1 + color], opening[2 - color], opening[3]);
+
+                for (int j = 0; j < size; j++) {
+                    position.make(moves[j]);
+
+                    if (positions.add(position.hash)) {
+                        next.add(new long[] {position.color, position.pieces[WHITE], position.pieces[BLACK], position.kings});
+                    }
+
+                    position.unmake();
+                }
+            }
+
+            openings.clear();
+            openings.addAll(next);
+        }
+    }
+
+    //result for white: 1 win, 0 draw, -1 loss
+    private int play(long[] opening, Player[] players, Search[] searches) {
+        MoveGenerator moveGenerator = new MoveGenerator();
+        Position position = new Position((int) opening[0], opening[1 + (int) opening[0]], opening[2 - (int) opening[0]], opening[3]);
+
+        for (int plies = 0, kingsOnly = 0; plies < MAX_PLIES && kingsOnly < KINGS_ONLY; plies++) {
+            int color = position.color;
+            long isColor = position.pieces[color];
+            long opponent = position.pieces[1 - color];
+            long kings = position.kings;
+            long[] moves = Arrays.copyOf(moveGenerator.getMoves(0), moveGenerator.generate(0, color, isColor, opponent, kings));
+
+            if (moves.length == 0) {
+                return color == WHITE ? -1 : 1;
+            }
+
+            Player player = players[color];
+            Statistics[] searched = new Statistics[1];//null: book move
+
+            long move = MinMax.getAIMove(searches[color], color, isColor, opponent, kings, moves, (depth, value, statistics, bestMoves) -> {
+                searched[0] = statistics;
+            });
+
+            if (searched[0] != null) {
+                player.statistics.add(searched[0]);
+            }
+
+            kingsOnly = getCaptures(move) == 0l && (kings & 1l << getFrom(move)) != 0l ? kingsOnly + 1 : 0;
+
+            position.make(move);
+        }
+
+        return 0;
+    }
+
+    //game: opening game / 2, A white if game is even, false: not played (SPRT decided)
+    private boolean play(int game) {
+        if (isDecided.get()) {
+            return false;
+        }
+
+        Search[] searches = this.searches.get();
+
+        for (Search search : searches) {
+            search.table.clear();
+        }
+
+        int a = game % 2;//color of A
+        int result = play(openings.get(game / 2 % openings.size()), a == WHITE ? players : new Player[] {players[1], players[0]}, a == WHITE ? searches : new Search[] {searches[1], searches[0]});
+
+        (result == 0 ? draws : (result == 1) == (a == WHITE) ? wins : losses).incrementAndGet();
+
+        return true;
+    }
+
+    private static double getElo(double score) {
+        return -400.0 * Math.log10(1.0 / score - 1.0);
+    }
+
+    private static double getScore(double elo) {
+        return 1.0 / (1.0 + Math.pow(10.0, -elo / 400.0));
+    }
+
+    //wins, draws, losses, Elo +- 95%, SPRT (log likelihood ratio, normal approximation)
+    private synchronized void report() {
+        int wins = this.wins.get();
+        int draws = this.draws.get();
+        int losses = this.losses.get();
+        int games = wins + draws + losses;
+
+        double score = (wins + draws / 2.0) / games;
+        double variance = (wins * Math.pow(1.0 - score, 2.0) + draws * Math.pow(0.5 - score, 2.0) + losses * Math.pow(score, 2.0)) / games;
+        double error = 1.96 * Math.sqrt(variance / games);
+
+        double low = Math.log(BETA / (1.0 - ALFA));
+        double high = Math.log((1.0 - BETA) / ALFA);
+        //variance with half a win and half a loss more (prior): only draws, only wins or only losses (variance 0) still decide
+        double prior = ((wins + 0.5) * Math.pow(1.0 - score, 2.0) + draws * Math.pow(0.5 - score, 2.0) + (losses + 0.5) * Math.pow(score, 2.0)) / (games + 1);
+        double llr = games * (getScore(ELO1) - getScore(ELO0)) * (2.0 * score - getScore(ELO0) - getScore(ELO1)) / (2.0 * prior);
+
+        String sprt = llr >= high ? "H1 accepted" : llr <= low ? "H0 accepted" : "continue";
+
+        if (llr >= high || llr <= low) {
+            isDecided.set(true);
+        }
+
+        String elo = score <= 0.0 || score >= 1.0 ? (score <= 0.0 ? "-inf" : "+inf") : String.format("%+.1f +- %.1f", getElo(score), (getElo(Math.min(0.999, score + error)) - getElo(Math.max(0.001, score - error))) / 2.0);
+        Statistics a = players[0].statistics;
+        Statistics b = players[1].statistics;
+
+        String nps = String.format("%d / %d", a.getNodesPerSecond(), b.getNodesPerSecond());
+        String reSearches = String.format("%.2f / %.2f", a.getReSearches() * 1000.0 / Math.max(1l, a.getNodes()), b.getReSearches() * 1000.0 / Math.max(1l, b.getNodes()));
+        String aspiration = String.format("%.1f%% / %.1f%%", a.getAspirationReSearches() * 100.0 / Math.max(1l, a.iterations.get() - a.getSearches()), b.getAspirationReSearches() * 100.0 / Math.max(1l, b.iterations.get() - b.getSearches()));
+        String table = String.format("%.1f%% / %.1f%%", a.getHitRate() * 100.0, b.getHitRate() * 100.0);
+        String cutoffs = String.format("%.1f%% / %.1f%%", a.getFirstMoveCutoffRate() * 100.0, b.getFirstMoveCutoffRate() * 100.0);
+
+        System.out.println(String.format("%6d games: +%d =%d -%d, elo %s, LLR %.2f [%.2f, %.2f] %s, nodes/s %s, re-searches/1000 nodes %s, aspiration fails %s, table hits %s, first move cutoffs %s", games, wins, draws, losses, elo, llr, low, high, sprt, nps, reSearches, aspiration, table, cutoffs));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int games = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        Player a = new Player("A", args.length > 1 ? args[1] : "");
+        Player b = new Player("B", args.length > 2 ? args[2] : "");
+        int parallel = args.length > 3 ? Integer.parseInt(args[3]) : Math.max(1, Runtime.getRuntime().availableProcessors() / Math.max(a.threads, b.threads));
+        int plies = args.length > 4 ? Integer.parseInt(args[4]) : 3;
+
+        Tournament tournament = new Tournament(a, b, plies);
+
+        System.out.println(a + " vs " + b + ", " + games + " games, " + tournament.openings.size() + " openings, " + parallel + " parallel");
+
+        ForkJoinPool pool = new ForkJoinPool(parallel);
+        AtomicInteger played = new AtomicInteger();
+        int interval = Math.max(1, games / 20);
+
+        for (int i = 0; i < games; i++) {
+            int game = i;
+
+            pool.execute(() -> {
+                if (tournament.play(game) && played.incrementAndGet() % interval == 0) {
+                    tournament.report();
+                }
+            });
+        }
+
+        pool.shutdown();
+        pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+
+        if (played.get() % interval != 0) {
+            tournament.report();
+        }
+    }
+
+}
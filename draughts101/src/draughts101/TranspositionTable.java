@@ -0,0 +1,249 @@
+package draughts101;
+
+import static draughts101.Board.BLACK;
+import static draughts101.Board.GRID;
+import static draughts101.MoveGenerator.getCaptures;
+import static draughts101.MoveGenerator.getFrom;
+import static draughts101.MoveGenerator.getKings;
+import static draughts101.MoveGenerator.getTo;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * TranspositionTable
+ *
+ * Fixed-size hash table (hash, depth, value, bound, best move), keyed by 64-bit Zobrist hashing.
+ *
+ * Entries (16 bytes) are packed as (hash ^ data, data) in preallocated memory, so there is no allocation during a search.
+ * Threads share the table without locks: an entry torn by another thread fails the hash ^ data check.
+ *
+ * Heap: long[], 1 entry per hash (max 2^29 entries, 8 GB: 2 longs per entry in 1 array).
+ * Direct: direct ByteBuffers outside the heap (not scanned or moved by the GC, no -Xmx needed, more than 2 GB in chunks of 1 GB), buckets of 4 entries (64 bytes).
+ *
+ * @author van Foeken
+ */
+
+abstract class TranspositionTable {
+    final static int LOWER = 1;
+    final static int UPPER = 2;
+    final static int EXACT = LOWER | UPPER;
+
+    final static int NONE = 0xFFF;//no best move
+
+    final static long EMPTY = 0l;
+
+    //[white man, black man, white king, black king][index]
+    final static long[][] ZOBRIST = new long[4][GRID * GRID / 2];
+    final static long SIDE;//black to move
+
+    static {
+        Random random = new Random(101);
+
+        for (long[] zobrist : ZOBRIST) {
+            for (int i = 0; i < zobrist.length; i++) {
+                zobrist[i] = random.nextLong();
+            }
+        }
+
+        SIDE = random.nextLong();
+    }
+
+    static long getHash(int color, long isColor, long opponent, long kings) {
+        long hash = color == BLACK ? SIDE : 0l;
+        
+        for (long pieces = isColor ^ opponent; pieces != 0l; pieces ^= Long.lowestOneBit(pieces)) {
+            int index = Long.numberOfTrailingZeros(pieces);
+            
+            hash ^= ZOBRIST[((isColor & 1l << index) != 0l ? color : 1 - color) + ((kings & 1l << index) != 0l ? 2 : 0)][index];
+        }
+        
+        return hash;
+    }
+    
+    //hash after move of color
+    static long getMoveHash(int color, long hash, long kings, long move) {
+        int from = getFrom(move);
+        int to = getTo(move);
+        
+        hash ^= SIDE ^ ZOBRIST[color + ((kings & 1l << from) != 0l ? 2 : 0)][from] ^ ZOBRIST[color + ((getKings(color, kings, move) & 1l << to) != 0l ? 2 : 0)][to];
+        
+        for (long captures = getCaptures(move); captures != 0l; captures ^= Long.lowestOneBit(captures)) {
+            int capture = Long.numberOfTrailingZeros(captures);
+
+            hash ^= ZOBRIST[1 - color + ((kings & 1l << capture) != 0l ? 2 : 0)][capture];
+        }
+        
+        return hash;
+    }
+
+    final private static int ENTRY = 16;//bytes
+
+    //table of megabytes, direct: outside the heap
+    static TranspositionTable getTable(long megabytes, boolean isDirect) {
+        long size = Math.max(1l, megabytes) * (1 << 20) / ENTRY;
+
+        return isDirect ? new Direct(size) : new Heap((int) Math.min(Heap.MAX_SIZE, size));
+    }
+
+    abstract long size();//entries
+    abstract void clear();
+    abstract long get(long hash);//entry or EMPTY
+    abstract void put(long hash, int depth, int value, int bound, int move);
+
+    static long getData(int depth, int value, int bound, int move) {
+        return (long) move << 42 | (long) bound << 40 | (long) depth << 32 | value & 0xFFFFFFFFl;
+    }
+
+    final static class Heap extends TranspositionTable {
+        final static int MAX_SIZE = 1 << 29;//entries: long[2 * size] below 2^31
+
+        final private long[] table;
+        final private int mask;
+
+        Heap(int size) {
+            size = Integer.highestOneBit(Math.max(1, Math.min(MAX_SIZE, size)));
+
+            table = new long[size * 2];
+            mask = size - 1;
+        }
+
+        @Override
+        long size() {
+            return mask + 1;
+        }
+
+        @Override
+        void clear() {
+            Arrays.fill(table, 0l);
+        }
+
+        @Override
+        long get(long hash) {
+            int index = (int) hash & mask;
+            long data = table[index * 2 + 1];
+
+            return (table[index * 2] ^ data) == hash ? data : EMPTY;
+        }
+
+        @Override
+        void put(long hash, int depth, int value, int bound, int move) {
+            int index = (int) hash & mask;
+            long data = table[index * 2 + 1];
+            boolean isHash = (table[index * 2] ^ data) == hash;
+
+            if (!isHash || getDepth(data) <= depth) {
+                if (move == NONE && isHash) {
+                    move = getMove(data);
+                }
+
+                data = getData(depth, value, bound, move);
+
+                table[index * 2] = hash ^ data;
+                table[index * 2 + 1] = data;
+            }
+        }
+    }
+
+    final static class Direct extends TranspositionTable {
+        final private static int CHUNK = 30;//1 GB per ByteBuffer
+        final private static int BUCKET = 4;//entries
+
+        final private ByteBuffer[] chunks;
+        final private long mask;//buckets - 1
+
+        Direct(long size) {
+            size = Long.highestOneBit(Math.max(BUCKET, size));
+
+            chunks = new ByteBuffer[(int) Math.max(1l, size * ENTRY >>> CHUNK)];
+            mask = size / BUCKET - 1;
+
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = ByteBuffer.allocateDirect((int) Math.min(size * ENTRY, 1l << CHUNK)).order(ByteOrder.nativeOrder());
+            }
+        }
+
+        @Override
+        long size() {
+            return (mask + 1) * BUCKET;
+        }
+
+        @Override
+        void clear() {
+            for (ByteBuffer chunk : chunks) {
+                for (int i = 0; i < chunk.capacity(); i += 8) {
+                    chunk.putLong(i, 0l);
+                }
+            }
+        }
+
+        @Override
+        long get(long hash) {
+            long bucket = (hash & mask) * BUCKET * ENTRY;
+            ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK)];
+            int index = (int) bucket & (1 << CHUNK) - 1;
+
+            for (int i = index; i < index + BUCKET * ENTRY; i += ENTRY) {
+                long data = chunk.getLong(i + 8);
+
+                if ((chunk.getLong(i) ^ data) == hash) {
+                    return data;
+                }
+            }
+
+            return EMPTY;
+        }
+
+        //same position (if not deeper) or the lowest depth of the bucket
+        @Override
+        void put(long hash, int depth, int value, int bound, int move) {
+            long bucket = (hash & mask) * BUCKET * ENTRY;
+            ByteBuffer chunk = chunks[(int) (bucket >>> CHUNK)];
+            int index = (int) bucket & (1 << CHUNK) - 1;
+            int replace = index;
+            int lowest = Integer.MAX_VALUE;
+
+            for (int i = index; i < index + BUCKET * ENTRY; i += ENTRY) {
+                long data = chunk.getLong(i + 8);
+
+                if ((chunk.getLong(i) ^ data) == hash) {
+                    if (getDepth(data) > depth) {
+                        return;
+                    } else if (move == NONE) {
+                        move = getMove(data);
+                    }
+
+                    replace = i;
+
+                    break;
+                } else if (getDepth(data) < lowest) {
+                    replace = i;
+                    lowest = getDepth(data);
+                }
+            }
+
+            long data = getData(depth, value, bound, move);
+
+            chunk.putLong(replace, hash ^ data);
+            chunk.putLong(replace + 8, data);
+        }
+    }
+
+    static int getValue(long entry) {
+        return (int) entry;
+    }
+
+    static int getDepth(long entry) {
+        return (int) (entry >>> 32) & 0xFF;
+    }
+
+    static int getBound(long entry) {
+        return (int) (entry >>> 40) & EXACT;
+    }
+
+    static int getMove(long entry) {
+        return (int) (entry >>> 42) & NONE;
+    }
+
+}